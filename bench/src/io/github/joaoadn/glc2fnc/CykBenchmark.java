@@ -0,0 +1,81 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Vazão do reconhecedor CYK, em cadeias por segundo, para expressões
+// aritméticas válidas com length tokens. A gramática é convertida uma vez; a
+// tabela é alocada a cada cadeia, como em CykRecognizer.accepts.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class CykBenchmark {
+
+    static final List<String> EXPRESSIONS = List.of(
+            "<Expr> -> <Expr> + <Term> | <Expr> - <Term> | <Term>",
+            "<Term> -> <Term> * <Factor> | <Term> / <Factor> | <Factor>",
+            "<Factor> -> ( <Expr> ) | - <Factor> | id | num");
+
+    // Só comprimentos ímpares formam expressões sem o menos unário
+    @Param({"9", "33", "129", "513"})
+    int length;
+
+    @Param("42")
+    long seed;
+
+    CykRecognizer recognizer;
+    String[] inputs;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        recognizer = CykRecognizer.compile(EXPRESSIONS, new GLCtoFNC.Options());
+        Random random = new Random(seed);
+        inputs = new String[64];
+        for (int k = 0; k < inputs.length; k++) {
+            StringBuilder expression = new StringBuilder();
+            expression(random, length, expression);
+            inputs[k] = expression.toString().trim();
+            if (!recognizer.accepts(inputs[k])) {
+                throw new IllegalStateException("expressão rejeitada: " + inputs[k]);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean accepts() {
+        return recognizer.accepts(inputs[next++ & (inputs.length - 1)]);
+    }
+
+    // Expressão com exatamente length tokens (length ímpar)
+    static void expression(Random random, int length, StringBuilder out) {
+        if (length == 1) {
+            out.append(random.nextBoolean() ? "id " : "num ");
+            return;
+        }
+        if (length == 3 || random.nextInt(4) == 0) {
+            if (length == 3 && random.nextBoolean()) {
+                out.append("( ");
+                expression(random, 1, out);
+                out.append(") ");
+                return;
+            }
+            if (length > 3) {
+                out.append("( ");
+                expression(random, length - 2, out);
+                out.append(") ");
+                return;
+            }
+        }
+        int left = 1 + 2 * random.nextInt((length - 1) / 2);
+        expression(random, left, out);
+        out.append("+-*/".charAt(random.nextInt(4))).append(' ');
+        expression(random, length - 1 - left, out);
+    }
+}
@@ -0,0 +1,179 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Gerador de gramáticas sintéticas na sintaxe de símbolos separados por
+// espaços. A mesma semente e os mesmos parâmetros geram sempre o mesmo texto.
+// Todas as variáveis são alcançáveis a partir de V0 e geram alguma cadeia, de
+// modo que a remoção de símbolos inúteis não esvazia a gramática.
+public final class GrammarGenerator {
+
+    private long seed = 42;
+    private int variables = 100;
+    private int productions = 500;
+    private int rhsLength = 4;
+    private double nullableRatio = 0.2;
+    private int unitDepth = 2;
+    private int terminals = 20;
+
+    public GrammarGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public GrammarGenerator variables(int variables) {
+        if (variables < 1) {
+            throw new IllegalArgumentException("variables deve ser positivo: " + variables);
+        }
+        this.variables = variables;
+        return this;
+    }
+
+    // Total aproximado de produções; as regras de ligação, terminais, lambda e
+    // unitárias contam para esse total
+    public GrammarGenerator productions(int productions) {
+        this.productions = productions;
+        return this;
+    }
+
+    public GrammarGenerator rhsLength(int rhsLength) {
+        if (rhsLength < 1) {
+            throw new IllegalArgumentException("rhsLength deve ser positivo: " + rhsLength);
+        }
+        this.rhsLength = rhsLength;
+        return this;
+    }
+
+    public GrammarGenerator nullableRatio(double nullableRatio) {
+        if (nullableRatio < 0 || nullableRatio > 1) {
+            throw new IllegalArgumentException("nullableRatio deve estar entre 0 e 1: " + nullableRatio);
+        }
+        this.nullableRatio = nullableRatio;
+        return this;
+    }
+
+    // Comprimento das cadeias de regras unitárias A -> B -> C ...; 0 não gera
+    // regras unitárias
+    public GrammarGenerator unitDepth(int unitDepth) {
+        this.unitDepth = Math.max(0, unitDepth);
+        return this;
+    }
+
+    public GrammarGenerator terminals(int terminals) {
+        this.terminals = Math.max(1, terminals);
+        return this;
+    }
+
+    public List<String> generate() {
+        Random random = new Random(seed);
+        List<List<String>> alternatives = new ArrayList<>(variables);
+        for (int v = 0; v < variables; v++) {
+            alternatives.add(new ArrayList<>());
+        }
+        int count = 0;
+
+        // Toda variável gera um terminal
+        for (int v = 0; v < variables; v++) {
+            alternatives.get(v).add(terminal(random));
+            count++;
+        }
+
+        // Cada variável V1.. aparece no corpo de uma variável anterior
+        for (int v = 1; v < variables; v++) {
+            String[] body = randomBody(random, 1 + random.nextInt(rhsLength));
+            if (body.length == 1) {
+                body = new String[] {terminal(random), "V" + v};
+            } else {
+                body[random.nextInt(body.length)] = "V" + v;
+            }
+            alternatives.get(random.nextInt(v)).add(String.join(" ", body));
+            count++;
+        }
+
+        // Variáveis anuláveis, escolhidas por uma permutação da semente
+        int[] order = permutation(random, variables);
+        int nullable = (int) Math.round(nullableRatio * variables);
+        for (int k = 0; k < nullable; k++) {
+            alternatives.get(order[k]).add(".");
+            count++;
+        }
+
+        // Cadeias de regras unitárias com unitDepth ligações cada
+        if (unitDepth > 0) {
+            order = permutation(random, variables);
+            for (int k = 0; k + 1 < variables; k++) {
+                if (k % (unitDepth + 1) != unitDepth) {
+                    alternatives.get(order[k]).add("V" + order[k + 1]);
+                    count++;
+                }
+            }
+        }
+
+        for (; count < productions; count++) {
+            int length = rhsLength == 1 ? 1 : 2 + random.nextInt(rhsLength - 1);
+            alternatives.get(random.nextInt(variables)).add(String.join(" ", randomBody(random, length)));
+        }
+
+        List<String> rules = new ArrayList<>(variables);
+        for (int v = 0; v < variables; v++) {
+            rules.add("V" + v + " -> " + String.join(" | ", alternatives.get(v)));
+        }
+        return rules;
+    }
+
+    private String[] randomBody(Random random, int length) {
+        String[] body = new String[length];
+        for (int i = 0; i < length; i++) {
+            body[i] = random.nextInt(10) < 7 ? "V" + random.nextInt(variables) : terminal(random);
+        }
+        return body;
+    }
+
+    private String terminal(Random random) {
+        return "t" + random.nextInt(terminals);
+    }
+
+    private static int[] permutation(Random random, int n) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+
+    // Uso: GrammarGenerator [--seed N] [--variables N] [--productions N] [--rhs-length N]
+    //                       [--nullable-ratio X] [--unit-depth N] [--terminals N] [arquivo]
+    public static void main(String[] args) throws IOException {
+        GrammarGenerator generator = new GrammarGenerator();
+        String output = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed" -> generator.seed(Long.parseLong(args[++i]));
+                case "--variables" -> generator.variables(Integer.parseInt(args[++i]));
+                case "--productions" -> generator.productions(Integer.parseInt(args[++i]));
+                case "--rhs-length" -> generator.rhsLength(Integer.parseInt(args[++i]));
+                case "--nullable-ratio" -> generator.nullableRatio(Double.parseDouble(args[++i]));
+                case "--unit-depth" -> generator.unitDepth(Integer.parseInt(args[++i]));
+                case "--terminals" -> generator.terminals(Integer.parseInt(args[++i]));
+                default -> output = args[i];
+            }
+        }
+        Writer writer = output == null
+                ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                : new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8);
+        try (BufferedWriter bw = new BufferedWriter(writer)) {
+            for (String rule : generator.generate()) {
+                bw.write(rule);
+                bw.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Tempo de uma atualização do IncrementalConverter contra o de uma conversão
+// completa da mesma gramática. Cada chamada de update alterna entre as regras
+// geradas e uma cópia com edited linhas sem a última alternativa, trocadas no
+// lugar, de modo que toda chamada aplica uma edição de verdade.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class IncrementalBenchmark {
+
+    @Param("5000")
+    int variables;
+
+    @Param("30000")
+    int productions;
+
+    @Param("0.05")
+    double nullableRatio;
+
+    @Param("1")
+    int unitDepth;
+
+    @Param("3")
+    int edited;
+
+    @Param("42")
+    long seed;
+
+    GLCtoFNC.Options options;
+    List<String> rules;
+    List<String> edit;
+    IncrementalConverter converter;
+    boolean toggle;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        rules = new GrammarGenerator().seed(seed).variables(variables).productions(productions)
+                .nullableRatio(nullableRatio).unitDepth(unitDepth).generate();
+        options = new GLCtoFNC.Options().maxProductions(Long.MAX_VALUE);
+        edit = new ArrayList<>(rules);
+        Random random = new Random(seed);
+        for (int k = 0; k < edited; k++) {
+            int line = random.nextInt(edit.size());
+            String rule = edit.get(line);
+            int last = rule.lastIndexOf('|');
+            edit.set(line, last < 0 ? rule + " | " + rule.substring(rule.indexOf("->") + 2).trim() : rule.substring(0, last).trim());
+        }
+        converter = new IncrementalConverter(rules, options);
+    }
+
+    @Benchmark
+    public List<String> update() {
+        toggle = !toggle;
+        return converter.update(toggle ? edit : rules);
+    }
+
+    @Benchmark
+    public List<String> convert() {
+        return GLCtoFNC.convert(rules, options);
+    }
+}
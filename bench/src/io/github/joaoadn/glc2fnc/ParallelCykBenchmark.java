@@ -0,0 +1,55 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Tempo de uma entrada longa com as diagonais da tabela divididas entre
+// threads, comparado com o preenchimento sequencial (sequential).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 2, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ParallelCykBenchmark {
+
+    @Param({"513", "1025", "2049"})
+    int length;
+
+    @Param({"2", "4", "8"})
+    int threads;
+
+    @Param("42")
+    long seed;
+
+    CykRecognizer recognizer;
+    String input;
+    ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        recognizer = CykRecognizer.compile(CykBenchmark.EXPRESSIONS, new GLCtoFNC.Options());
+        StringBuilder expression = new StringBuilder();
+        CykBenchmark.expression(new Random(seed), length, expression);
+        input = expression.toString().trim();
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public boolean sequential() {
+        return recognizer.accepts(input);
+    }
+
+    @Benchmark
+    public boolean parallel() {
+        return recognizer.accepts(input, pool);
+    }
+}
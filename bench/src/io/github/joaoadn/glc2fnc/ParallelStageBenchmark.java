@@ -0,0 +1,83 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Escalabilidade de DEL e BIN (RIGHT_FOLD) com o número de threads. Com
+// threads = 1 as etapas rodam na versão sequencial, sem pool.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 2, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ParallelStageBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param("5000")
+        int variables;
+
+        @Param("50000")
+        int productions;
+
+        @Param("6")
+        int rhsLength;
+
+        @Param("0.2")
+        double nullableRatio;
+
+        @Param({"1", "2", "4", "8", "16", "32", "64"})
+        int threads;
+
+        @Param("42")
+        long seed;
+
+        List<String> rules;
+        ForkJoinPool pool;
+        GLCtoFNC.Options options;
+        Grammar started;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            rules = new GrammarGenerator().seed(seed).variables(variables).productions(productions)
+                    .rhsLength(rhsLength).nullableRatio(nullableRatio).generate();
+            pool = threads > 1 ? new ForkJoinPool(threads) : null;
+            options = new GLCtoFNC.Options().maxProductions(Long.MAX_VALUE).parallel(pool);
+            started = GLCtoFNC.removeInitialRecursion(GLCtoFNC.parseGrammar(rules));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    // BIN cria variáveis T<n> na tabela de símbolos, então recebe uma
+    // gramática recém-preparada a cada chamada
+    @State(Scope.Thread)
+    public static class FreshBinaryInput {
+        Grammar grammar;
+
+        @Setup(Level.Invocation)
+        public void setup(Input input) {
+            Grammar grammar = GLCtoFNC.removeInitialRecursion(GLCtoFNC.parseGrammar(input.rules));
+            grammar = GLCtoFNC.removeChainRules(GLCtoFNC.removeLambdaRules(grammar, input.options));
+            this.grammar = GLCtoFNC.replaceTerminalsWithVariables(GLCtoFNC.removeUselessSymbols(grammar));
+        }
+    }
+
+    @Benchmark
+    public Object removeLambdaRules(Input input) {
+        return GLCtoFNC.removeLambdaRules(input.started, input.options);
+    }
+
+    @Benchmark
+    public Object convertToBinaryRules(FreshBinaryInput fresh, Input input) {
+        return GLCtoFNC.convertToBinaryRules(fresh.grammar, input.options);
+    }
+}
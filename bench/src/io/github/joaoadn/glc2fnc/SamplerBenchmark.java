@@ -0,0 +1,47 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Vazão do sorteio de cadeias, em cadeias por segundo, sobre a gramática de
+// expressões. As tabelas de contagem são montadas uma vez por rodada, até o
+// maior comprimento testado; tables mede só a montagem.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class SamplerBenchmark {
+
+    @Param({"9", "33", "129", "513"})
+    int length;
+
+    @Param("42")
+    long seed;
+
+    GLCtoFNC.Options options;
+    StringSampler sampler;
+    SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        options = new GLCtoFNC.Options();
+        sampler = StringSampler.compile(CykBenchmark.EXPRESSIONS, options, length);
+        random = new SplittableRandom(seed);
+    }
+
+    @Benchmark
+    public String sample() {
+        return sampler.sample(length, random);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public StringSampler tables() {
+        return StringSampler.compile(CykBenchmark.EXPRESSIONS, options, length);
+    }
+}
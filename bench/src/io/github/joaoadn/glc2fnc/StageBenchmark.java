@@ -0,0 +1,148 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks de cada etapa da conversão na ordem clássica e do pipeline
+// inteiro. Ficam no pacote do conversor para chamar as etapas diretamente.
+// Cada etapa recebe a saída das anteriores, calculada uma vez por rodada. As
+// etapas que criam variáveis novas na tabela de símbolos (START e BIN) recebem
+// uma gramática recém-lida a cada chamada, para que a tabela não cresça entre
+// as chamadas.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class StageBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param("200")
+        int variables;
+
+        @Param("1000")
+        int productions;
+
+        @Param("4")
+        int rhsLength;
+
+        @Param("0.2")
+        double nullableRatio;
+
+        @Param("2")
+        int unitDepth;
+
+        @Param("42")
+        long seed;
+
+        List<String> rules;
+        GLCtoFNC.Options options;
+        Grammar started;
+        Grammar withoutLambda;
+        Grammar withoutChains;
+        Grammar withoutUseless;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            rules = new GrammarGenerator().seed(seed).variables(variables).productions(productions)
+                    .rhsLength(rhsLength).nullableRatio(nullableRatio).unitDepth(unitDepth).generate();
+            options = new GLCtoFNC.Options().maxProductions(Long.MAX_VALUE);
+            started = GLCtoFNC.removeInitialRecursion(GLCtoFNC.parseGrammar(rules));
+            withoutLambda = GLCtoFNC.removeLambdaRules(started, options);
+            withoutChains = GLCtoFNC.removeChainRules(withoutLambda);
+            withoutUseless = GLCtoFNC.removeUselessSymbols(withoutChains);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FreshGrammar {
+        Grammar parsed;
+
+        @Setup(Level.Invocation)
+        public void setup(Input input) {
+            parsed = GLCtoFNC.parseGrammar(input.rules);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FreshBinaryInput {
+        Grammar grammar;
+
+        @Setup(Level.Invocation)
+        public void setup(Input input) {
+            Grammar grammar = GLCtoFNC.removeInitialRecursion(GLCtoFNC.parseGrammar(input.rules));
+            grammar = GLCtoFNC.removeChainRules(GLCtoFNC.removeLambdaRules(grammar, input.options));
+            this.grammar = GLCtoFNC.replaceTerminalsWithVariables(GLCtoFNC.removeUselessSymbols(grammar));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Full {
+        @Param({"CLASSIC", "POLYNOMIAL"})
+        GLCtoFNC.Order order;
+
+        @Param({"RIGHT_FOLD", "REPAIR"})
+        GLCtoFNC.Binarization binarization;
+
+        GLCtoFNC.Options options;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            options = new GLCtoFNC.Options().maxProductions(Long.MAX_VALUE).order(order).binarization(binarization);
+        }
+    }
+
+    @Benchmark
+    public Object parse(Input input) {
+        return GLCtoFNC.parseGrammar(input.rules);
+    }
+
+    @Benchmark
+    public Object start(FreshGrammar fresh) {
+        return GLCtoFNC.removeInitialRecursion(fresh.parsed);
+    }
+
+    @Benchmark
+    public Object nullable(Input input) {
+        return GLCtoFNC.identifyNullableVariables(input.started);
+    }
+
+    @Benchmark
+    public Object removeLambdaRules(Input input) {
+        return GLCtoFNC.removeLambdaRules(input.started, input.options);
+    }
+
+    @Benchmark
+    public Object removeChainRules(Input input) {
+        return GLCtoFNC.removeChainRules(input.withoutLambda);
+    }
+
+    @Benchmark
+    public Object removeUselessSymbols(Input input) {
+        return GLCtoFNC.removeUselessSymbols(input.withoutChains);
+    }
+
+    @Benchmark
+    public Object replaceTerminalsWithVariables(Input input) {
+        return GLCtoFNC.replaceTerminalsWithVariables(input.withoutUseless);
+    }
+
+    @Benchmark
+    public Object convertToBinaryRules(FreshBinaryInput fresh, Input input) {
+        return GLCtoFNC.convertToBinaryRules(fresh.grammar, input.options);
+    }
+
+    @Benchmark
+    public Object processGrammar(FreshGrammar fresh, Full full) {
+        return GLCtoFNC.processGrammar(fresh.parsed, full.options);
+    }
+
+    // Leitura, conversão e formatação da saída, como na API pública
+    @Benchmark
+    public List<String> convert(Input input, Full full) {
+        return GLCtoFNC.convert(input.rules, full.options);
+    }
+}
@@ -0,0 +1,161 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+// Converte muitas gramáticas no mesmo processo, evitando iniciar uma JVM por
+// arquivo. As entradas podem ser um diretório (com os subdiretórios), um
+// padrão glob ou um arquivo de manifesto (@lista.txt, um caminho por linha),
+// e são distribuídas entre os núcleos por um ForkJoinPool.
+final class BatchConverter {
+
+    static final String OUTPUT_SUFFIX = "_fnc.txt";
+
+    private BatchConverter() {
+    }
+
+    static void run(String spec, String outputDir, int jobs, GLCtoFNC.Options options) throws IOException {
+        List<Path> inputs = resolveInputs(spec);
+        Path target = outputDir == null ? null : Files.createDirectories(Paths.get(outputDir));
+        List<Path> outputs = outputsFor(inputs, searchRoot(spec), target);
+        ForkJoinPool pool = new ForkJoinPool(jobs > 0 ? jobs : Runtime.getRuntime().availableProcessors());
+
+        long startTime = System.nanoTime();
+        List<String> results;
+        try {
+            results = pool.submit(() -> IntStream.range(0, inputs.size()).parallel()
+                    .mapToObj(i -> convert(inputs.get(i), outputs.get(i), options))
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("conversão em lote interrompida");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        PrintStream out = GLCtoFNC.standardOutput();
+        int failures = 0;
+        for (String result : results) {
+            out.println(result);
+            if (result.startsWith("ERRO")) {
+                failures++;
+            }
+        }
+        out.printf("%d gramáticas, %d convertidas, %d com erro em %.3f s (%.1f gramáticas/s, %d threads)%n",
+                results.size(), results.size() - failures, failures, seconds, results.size() / Math.max(seconds, 1e-9),
+                pool.getParallelism());
+    }
+
+    private static String convert(Path input, Path output, GLCtoFNC.Options options) {
+        try {
+            Grammar grammar = GLCtoFNC.processGrammar(GLCtoFNC.readGrammar(input.toString()), options);
+            if (output.getParent() != null) {
+                Files.createDirectories(output.getParent());
+            }
+            GLCtoFNC.writeGrammar(output.toString(), grammar);
+            return "OK   " + input + " -> " + output + " (" + grammar.size() + " produções)";
+        } catch (IOException | RuntimeException e) {
+            return "ERRO " + input + ": " + e.getMessage();
+        }
+    }
+
+    // Com --out, cada saída repete o caminho da entrada relativo à raiz da
+    // busca, para que arquivos de mesmo nome em subdiretórios diferentes não
+    // se sobrescrevam; entradas fora da raiz ficam só com o nome. Duas
+    // entradas com a mesma saída são recusadas antes de qualquer conversão.
+    private static List<Path> outputsFor(List<Path> inputs, Path root, Path target) throws IOException {
+        Map<Path, Path> claimed = new HashMap<>();
+        List<Path> outputs = new ArrayList<>(inputs.size());
+        for (Path input : inputs) {
+            Path output = outputFor(input, root, target);
+            Path previous = claimed.putIfAbsent(output.toAbsolutePath().normalize(), input);
+            if (previous != null) {
+                throw new IOException("as entradas " + previous + " e " + input + " seriam gravadas em " + output);
+            }
+            outputs.add(output);
+        }
+        return outputs;
+    }
+
+    private static Path outputFor(Path input, Path root, Path target) {
+        String name = input.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String output = (dot > 0 ? name.substring(0, dot) : name) + OUTPUT_SUFFIX;
+        if (target == null) {
+            return input.resolveSibling(output);
+        }
+        Path relative = root.toAbsolutePath().normalize().relativize(input.toAbsolutePath().normalize());
+        if (relative.startsWith("..")) {
+            relative = relative.getFileName();
+        }
+        return target.resolve(relative).resolveSibling(output);
+    }
+
+    // O diretório do manifesto, o próprio diretório, o de um arquivo avulso
+    // ou, num glob, o prefixo do padrão sem curingas
+    private static Path searchRoot(String spec) {
+        if (spec.startsWith("@")) {
+            return Paths.get(spec.substring(1)).toAbsolutePath().getParent();
+        }
+        int wildcard = indexOfWildcard(spec);
+        if (wildcard < 0) {
+            Path path = Paths.get(spec);
+            return Files.isDirectory(path) ? path : path.toAbsolutePath().getParent();
+        }
+        int separator = spec.lastIndexOf('/', wildcard);
+        return Paths.get(separator < 0 ? "." : spec.substring(0, separator + 1));
+    }
+
+    private static List<Path> resolveInputs(String spec) throws IOException {
+        Path root = searchRoot(spec);
+        if (spec.startsWith("@")) {
+            List<Path> inputs = new ArrayList<>();
+            for (String line : Files.readAllLines(Paths.get(spec.substring(1)))) {
+                if (!line.isBlank() && !line.trim().startsWith("#")) {
+                    inputs.add(root.resolve(line.trim()));
+                }
+            }
+            return inputs;
+        }
+
+        PathMatcher matcher;
+        int wildcard = indexOfWildcard(spec);
+        if (wildcard < 0) {
+            if (!Files.isDirectory(Paths.get(spec))) {
+                return List.of(Paths.get(spec));
+            }
+            matcher = path -> path.getFileName().toString().endsWith(".txt");
+        } else {
+            String pattern = spec.substring(spec.lastIndexOf('/', wildcard) + 1);
+            PathMatcher glob = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            // No PathMatcher, **/ exige ao menos um diretório; como nos shells,
+            // o padrão também vale para os arquivos direto na raiz
+            PathMatcher top = pattern.startsWith("**/")
+                    ? FileSystems.getDefault().getPathMatcher("glob:" + pattern.substring(3)) : glob;
+            matcher = path -> glob.matches(path) || top.matches(path);
+        }
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> matcher.matches(root.relativize(path)))
+                    .filter(path -> !path.getFileName().toString().endsWith(OUTPUT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static int indexOfWildcard(String spec) {
+        for (int i = 0; i < spec.length(); i++) {
+            if ("*?[{".indexOf(spec.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
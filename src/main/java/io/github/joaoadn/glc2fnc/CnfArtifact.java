@@ -0,0 +1,436 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+// Gramática na FNC em formato binário, para ser mapeada em memória e
+// consultada direto do arquivo, sem leitura de texto nem cópias. Todos os
+// inteiros são little-endian de 4 bytes, e as seções vêm uma depois da outra
+// na ordem abaixo, com tamanhos dados pelos contadores do cabeçalho:
+//
+//   cabeçalho (64 bytes): "FNCB", versão, flags, símbolos, início, pares,
+//       cabeças unárias, cabeças binárias, bytes dos nomes, reservado,
+//       tamanho do arquivo (long), CRC32C de tudo depois do cabeçalho (long);
+//       o CRC32C não cobre o próprio cabeçalho, cujos contadores só são
+//       conferidos contra o tamanho do arquivo
+//   nameOffsets[símbolos + 1]   início de cada nome no bloco de nomes
+//   kinds[símbolos]             1 para variável, 0 para terminal
+//   sorted[símbolos]            ids ordenados por (tipo, bytes do nome)
+//   unaryBegin[símbolos + 1]    por terminal a, as variáveis A com A -> a
+//   unaryHeads[...]               em unaryHeads[unaryBegin[a] ..], em ordem
+//   pairBegin[símbolos + 1]     por variável B, os pares (B, C) em ordem de C
+//   pairSecond[pares]
+//   headBegin[pares + 1]        por par k, as variáveis A com A -> BC
+//   heads[...]
+//   nomes                       UTF-8
+public final class CnfArtifact {
+
+    static final int MAGIC = 'F' | 'N' << 8 | 'C' << 16 | 'B' << 24;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+
+    private static final int FLAG_TOKENIZED = 1;
+    private static final int FLAG_ACCEPTS_EMPTY = 2;
+
+    private final ByteBuffer buffer;
+    private final int symbolCount;
+    private final int start;
+    private final int flags;
+    private final int nameOffsets;
+    private final int kinds;
+    private final int sorted;
+    private final int unaryBegin;
+    private final int unaryHeads;
+    private final int pairBegin;
+    private final int pairSecond;
+    private final int headBegin;
+    private final int heads;
+    private final int names;
+
+    private CnfArtifact(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("não é um arquivo FNC binário");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("versão " + buffer.getInt(4) + " do formato binário não suportada");
+        }
+        flags = buffer.getInt(8);
+        symbolCount = count(12);
+        start = buffer.getInt(16);
+        int pairs = count(20);
+        int unaryCount = count(24);
+        int headCount = count(28);
+        int namesLength = count(32);
+        if (start < -1 || start >= symbolCount) {
+            throw corrupted();
+        }
+
+        // Em long, as somas de contadores até 2^31 não transbordam; se o fim
+        // bate com o tamanho do arquivo, todos os offsets cabem em int
+        long n = symbolCount;
+        long nameOffsets = HEADER_SIZE;
+        long kinds = nameOffsets + 4 * (n + 1);
+        long sorted = kinds + 4 * n;
+        long unaryBegin = sorted + 4 * n;
+        long unaryHeads = unaryBegin + 4 * (n + 1);
+        long pairBegin = unaryHeads + 4L * unaryCount;
+        long pairSecond = pairBegin + 4 * (n + 1);
+        long headBegin = pairSecond + 4L * pairs;
+        long heads = headBegin + 4L * (pairs + 1L);
+        long names = heads + 4L * headCount;
+        if (buffer.getLong(40) != buffer.capacity() || names + namesLength != buffer.capacity()) {
+            throw corrupted();
+        }
+        this.nameOffsets = (int) nameOffsets;
+        this.kinds = (int) kinds;
+        this.sorted = (int) sorted;
+        this.unaryBegin = (int) unaryBegin;
+        this.unaryHeads = (int) unaryHeads;
+        this.pairBegin = (int) pairBegin;
+        this.pairSecond = (int) pairSecond;
+        this.headBegin = (int) headBegin;
+        this.heads = (int) heads;
+        this.names = (int) names;
+    }
+
+    private int count(int offset) throws IOException {
+        int count = buffer.getInt(offset);
+        if (count < 0) {
+            throw corrupted();
+        }
+        return count;
+    }
+
+    private static IOException corrupted() {
+        return new IOException("arquivo FNC binário truncado ou corrompido");
+    }
+
+    // Mapeia o arquivo e confere o CRC32C do corpo (tudo menos o cabeçalho).
+    // Os contadores do cabeçalho são sempre conferidos; sem o CRC32C, os
+    // offsets guardados no corpo ficam sem conferência.
+    public static CnfArtifact map(Path path) throws IOException {
+        return map(path, true);
+    }
+
+    public static CnfArtifact map(Path path, boolean verify) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("arquivo FNC binário maior que 2 GB: " + path);
+            }
+            CnfArtifact artifact = new CnfArtifact(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if (verify && artifact.checksum() != artifact.buffer.getLong(48)) {
+                throw new IOException("soma de verificação inválida em " + path);
+            }
+            return artifact;
+        }
+    }
+
+    public static boolean isArtifact(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            return channel.read(magic, 0) == 4 && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    private long checksum() {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(HEADER_SIZE));
+        return crc.getValue();
+    }
+
+    public int symbolCount() {
+        return symbolCount;
+    }
+
+    // -1 quando a linguagem é vazia
+    public int start() {
+        return start;
+    }
+
+    public boolean acceptsEmpty() {
+        return (flags & FLAG_ACCEPTS_EMPTY) != 0;
+    }
+
+    // Se os terminais são lidos na sintaxe de tokens
+    public boolean tokenized() {
+        return (flags & FLAG_TOKENIZED) != 0;
+    }
+
+    public boolean isVariable(int symbol) {
+        return buffer.getInt(kinds + 4 * symbol) != 0;
+    }
+
+    public String name(int symbol) {
+        int from = buffer.getInt(nameOffsets + 4 * symbol);
+        int to = buffer.getInt(nameOffsets + 4 * symbol + 4);
+        byte[] bytes = new byte[to - from];
+        buffer.get(names + from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Busca binária pelo nome; -1 se não existir
+    public int lookup(String name, boolean variable) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int kind = variable ? 1 : 0;
+        int low = 0;
+        int high = symbolCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int symbol = buffer.getInt(sorted + 4 * middle);
+            int order = Integer.compare(buffer.getInt(kinds + 4 * symbol), kind);
+            if (order == 0) {
+                order = compareName(symbol, key);
+            }
+            if (order == 0) {
+                return symbol;
+            } else if (order < 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return -1;
+    }
+
+    // Variáveis A com A -> terminal, em ordem, como visão sobre o arquivo
+    public IntBuffer unary(int terminal) {
+        return slice(unaryHeads, buffer.getInt(unaryBegin + 4 * terminal), buffer.getInt(unaryBegin + 4 * terminal + 4));
+    }
+
+    // Variáveis A com A -> first second, em ordem; vazio se o par não existe
+    public IntBuffer binary(int first, int second) {
+        int low = buffer.getInt(pairBegin + 4 * first);
+        int high = buffer.getInt(pairBegin + 4 * first + 4) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = buffer.getInt(pairSecond + 4 * middle);
+            if (value == second) {
+                return slice(heads, buffer.getInt(headBegin + 4 * middle), buffer.getInt(headBegin + 4 * middle + 4));
+            } else if (value < second) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return slice(heads, 0, 0);
+    }
+
+    // Os pares (first, C) são os de índice pairFrom(first) .. pairTo(first) - 1
+    int pairCount() {
+        return buffer.getInt(20);
+    }
+
+    int pairFrom(int first) {
+        return buffer.getInt(pairBegin + 4 * first);
+    }
+
+    int pairTo(int first) {
+        return buffer.getInt(pairBegin + 4 * first + 4);
+    }
+
+    int pairSecond(int k) {
+        return buffer.getInt(pairSecond + 4 * k);
+    }
+
+    IntBuffer pairHeads(int k) {
+        return slice(heads, buffer.getInt(headBegin + 4 * k), buffer.getInt(headBegin + 4 * k + 4));
+    }
+
+    private IntBuffer slice(int section, int from, int to) {
+        return buffer.slice(section + 4 * from, 4 * (to - from)).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private int compareName(int symbol, byte[] key) {
+        int from = names + buffer.getInt(nameOffsets + 4 * symbol);
+        int length = names + buffer.getInt(nameOffsets + 4 * symbol + 4) - from;
+        for (int i = 0; i < Math.min(length, key.length); i++) {
+            int order = Integer.compare(buffer.get(from + i) & 0xFF, key[i] & 0xFF);
+            if (order != 0) {
+                return order;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    // Reconstrói o modelo interno; os ids dos símbolos são os mesmos do arquivo
+    Grammar grammar() {
+        SymbolTable symbols = new SymbolTable();
+        symbols.tokenized = tokenized();
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            symbols.intern(name(symbol), isVariable(symbol));
+        }
+        Grammar grammar = new Grammar(symbols, start);
+        if (acceptsEmpty()) {
+            grammar.add(start);
+        }
+        for (int terminal = 0; terminal < symbolCount; terminal++) {
+            IntBuffer variables = unary(terminal);
+            while (variables.hasRemaining()) {
+                grammar.add(variables.get(), terminal);
+            }
+        }
+        for (int first = 0; first < symbolCount; first++) {
+            for (int k = buffer.getInt(pairBegin + 4 * first); k < buffer.getInt(pairBegin + 4 * first + 4); k++) {
+                int second = buffer.getInt(pairSecond + 4 * k);
+                for (int h = buffer.getInt(headBegin + 4 * k); h < buffer.getInt(headBegin + 4 * k + 4); h++) {
+                    grammar.add(buffer.getInt(heads + 4 * h), first, second);
+                }
+            }
+        }
+        return grammar;
+    }
+
+    // Grava a gramática, que precisa estar na FNC
+    static void write(Grammar cnf, Path path) throws IOException {
+        SymbolTable symbols = cnf.symbols;
+        int n = symbols.size();
+        boolean acceptsEmpty = false;
+        // Depois da remoção de símbolos inúteis, um símbolo inicial sem
+        // produções é o de uma linguagem vazia
+        boolean generates = false;
+        List<long[]> unary = new ArrayList<>();
+        List<long[]> binary = new ArrayList<>();
+        for (int p = 0; p < cnf.size(); p++) {
+            int length = cnf.length(p);
+            generates |= cnf.head(p) == cnf.start;
+            if (length == 0 && cnf.head(p) == cnf.start) {
+                acceptsEmpty = true;
+            } else if (length == 1 && !symbols.isVariable(cnf.symbol(p, 0))) {
+                unary.add(new long[] {cnf.symbol(p, 0), cnf.head(p)});
+            } else if (length == 2 && symbols.isVariable(cnf.symbol(p, 0)) && symbols.isVariable(cnf.symbol(p, 1))) {
+                binary.add(new long[] {cnf.symbol(p, 0), cnf.symbol(p, 1), cnf.head(p)});
+            } else {
+                throw new IllegalArgumentException("a gramática não está na FNC: produção de "
+                        + symbols.name(cnf.head(p)) + " com " + length + " símbolos");
+            }
+        }
+        Comparator<long[]> byColumns = (a, b) -> Arrays.compare(a, b);
+        unary.sort(byColumns);
+        binary.sort(byColumns);
+        int pairs = 0;
+        for (int k = 0; k < binary.size(); k++) {
+            if (k == 0 || binary.get(k)[0] != binary.get(k - 1)[0] || binary.get(k)[1] != binary.get(k - 1)[1]) {
+                pairs++;
+            }
+        }
+
+        byte[][] encoded = new byte[n][];
+        int namesLength = 0;
+        for (int symbol = 0; symbol < n; symbol++) {
+            encoded[symbol] = symbols.name(symbol).getBytes(StandardCharsets.UTF_8);
+            namesLength += encoded[symbol].length;
+        }
+        Integer[] order = new Integer[n];
+        for (int symbol = 0; symbol < n; symbol++) {
+            order[symbol] = symbol;
+        }
+        Arrays.sort(order, (a, b) -> symbols.isVariable(a) != symbols.isVariable(b)
+                ? Boolean.compare(symbols.isVariable(a), symbols.isVariable(b))
+                : Arrays.compareUnsigned(encoded[a], encoded[b]));
+
+        long size = HEADER_SIZE + 4L * (n + 1 + n + n + n + 1 + unary.size() + n + 1 + pairs + pairs + 1 + binary.size())
+                + namesLength;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("gramática grande demais para o formato binário: " + size + " bytes");
+        }
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        out.position(HEADER_SIZE);
+
+        int offset = 0;
+        for (int symbol = 0; symbol < n; symbol++) {
+            out.putInt(offset);
+            offset += encoded[symbol].length;
+        }
+        out.putInt(offset);
+        for (int symbol = 0; symbol < n; symbol++) {
+            out.putInt(symbols.isVariable(symbol) ? 1 : 0);
+        }
+        for (Integer symbol : order) {
+            out.putInt(symbol);
+        }
+
+        putBegin(out, unary, n, 0);
+        for (long[] rule : unary) {
+            out.putInt((int) rule[1]);
+        }
+
+        int[] pairFirst = new int[pairs];
+        int[] pairSecond = new int[pairs];
+        int[] headBegin = new int[pairs + 1];
+        int pair = -1;
+        for (int k = 0; k < binary.size(); k++) {
+            long[] rule = binary.get(k);
+            if (pair < 0 || pairFirst[pair] != rule[0] || pairSecond[pair] != rule[1]) {
+                pair++;
+                pairFirst[pair] = (int) rule[0];
+                pairSecond[pair] = (int) rule[1];
+                headBegin[pair] = k;
+            }
+        }
+        headBegin[pairs] = binary.size();
+        int[] pairBegin = new int[n + 1];
+        for (int k = 0; k < pairs; k++) {
+            pairBegin[pairFirst[k] + 1]++;
+        }
+        for (int symbol = 0; symbol < n; symbol++) {
+            pairBegin[symbol + 1] += pairBegin[symbol];
+        }
+        for (int value : pairBegin) {
+            out.putInt(value);
+        }
+        for (int value : pairSecond) {
+            out.putInt(value);
+        }
+        for (int value : headBegin) {
+            out.putInt(value);
+        }
+        for (long[] rule : binary) {
+            out.putInt((int) rule[2]);
+        }
+        for (byte[] name : encoded) {
+            out.put(name);
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(out.array(), HEADER_SIZE, (int) size - HEADER_SIZE);
+        out.putInt(0, MAGIC);
+        out.putInt(4, VERSION);
+        out.putInt(8, (symbols.tokenized ? FLAG_TOKENIZED : 0) | (acceptsEmpty ? FLAG_ACCEPTS_EMPTY : 0));
+        out.putInt(12, n);
+        out.putInt(16, generates ? cnf.start : -1);
+        out.putInt(20, pairs);
+        out.putInt(24, unary.size());
+        out.putInt(28, binary.size());
+        out.putInt(32, namesLength);
+        out.putLong(40, size);
+        out.putLong(48, crc.getValue());
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.position(0);
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+
+    // CSR pela coluna column das regras já ordenadas
+    private static void putBegin(ByteBuffer out, List<long[]> rules, int n, int column) {
+        int[] begin = new int[n + 1];
+        for (long[] rule : rules) {
+            begin[(int) rule[column] + 1]++;
+        }
+        for (int symbol = 0; symbol < n; symbol++) {
+            begin[symbol + 1] += begin[symbol];
+        }
+        for (int value : begin) {
+            out.putInt(value);
+        }
+    }
+}
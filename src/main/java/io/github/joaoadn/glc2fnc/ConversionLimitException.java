@@ -0,0 +1,10 @@
+package io.github.joaoadn.glc2fnc;
+
+// Lançada quando uma etapa da conversão ultrapassa o limite de produções
+// configurado, em vez de deixar a gramática crescer até esgotar a memória.
+public class ConversionLimitException extends RuntimeException {
+
+    ConversionLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,273 @@
+package io.github.joaoadn.glc2fnc;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Servidor HTTP local para conversões repetidas. O resultado de cada
+// conversão fica em cache, indexado pelo SHA-256 da gramática canônica (regras
+// e alternativas ordenadas) e das opções usadas, de modo que a mesma gramática
+// com regras reordenadas também encontra o resultado pronto. Antes disso, o
+// SHA-256 do corpo recebido e das opções leva direto à chave canônica de um
+// pedido já visto, sem ler nem ordenar a gramática de novo.
+//
+//   POST /convert[?order=polynomial&binarize=repair]  corpo: gramática
+//   GET  /stats                                       acertos e falhas do cache
+final class ConversionServer {
+
+    private final GLCtoFNC.Options defaults;
+    private final ResultCache cache;
+
+    private ConversionServer(GLCtoFNC.Options defaults, long cacheBytes) {
+        this.defaults = defaults;
+        this.cache = new ResultCache(cacheBytes);
+    }
+
+    static void run(int port, long cacheBytes, GLCtoFNC.Options defaults) throws IOException {
+        ConversionServer server = new ConversionServer(defaults, cacheBytes);
+        HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.createContext("/convert", server::handleConvert);
+        http.createContext("/stats", server::handleStats);
+        // Java 17 não tem threads virtuais; as requisições usam um pool que cresce sob demanda
+        http.setExecutor(Executors.newCachedThreadPool());
+        http.start();
+        GLCtoFNC.standardOutput().println("Servidor de conversão em http://" + http.getAddress().getHostString() + ":"
+                + http.getAddress().getPort() + "/convert");
+    }
+
+    private void handleConvert(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "use POST com a gramática no corpo\n");
+                return;
+            }
+            GLCtoFNC.Options options;
+            try {
+                options = parseOptions(exchange.getRequestURI().getRawQuery());
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, "opção inválida: " + e.getMessage() + "\n");
+                return;
+            }
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String rawKey = rawKey(body, options);
+            String result = cache.getByAlias(rawKey);
+            boolean hit = result != null;
+            if (result == null) {
+                try {
+                    List<String> lines = new ArrayList<>();
+                    for (String line : new String(body, StandardCharsets.UTF_8).split("\r?\n")) {
+                        lines.add(line.trim());
+                    }
+                    Grammar grammar = GLCtoFNC.parseGrammar(lines);
+                    String key = canonicalKey(grammar, options);
+                    result = cache.get(key);
+                    hit = result != null;
+                    if (result == null) {
+                        StringWriter output = new StringWriter();
+                        BufferedWriter bw = new BufferedWriter(output);
+                        GLCtoFNC.writeGrammar(bw, GLCtoFNC.processGrammar(grammar, options));
+                        bw.flush();
+                        result = output.toString();
+                        cache.put(key, result);
+                    }
+                    cache.alias(rawKey, key);
+                } catch (ConversionLimitException | LanguageMismatchException e) {
+                    respond(exchange, 422, e.getMessage() + "\n");
+                    return;
+                } catch (RuntimeException e) {
+                    // Qualquer outra falha também responde, em vez de derrubar a
+                    // conexão; os detalhes ficam só no log do servidor
+                    PrintStream err = GLCtoFNC.standardError();
+                    err.println("Erro na conversão do pedido " + rawKey + ":");
+                    e.printStackTrace(err);
+                    respond(exchange, 500, "erro interno na conversão\n");
+                    return;
+                }
+            }
+            exchange.getResponseHeaders().set("X-Cache", hit ? "HIT" : "MISS");
+            respond(exchange, 200, result);
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            respond(exchange, 200, cache.stats() + "\n");
+        }
+    }
+
+    private GLCtoFNC.Options parseOptions(String query) {
+        GLCtoFNC.Options options = defaults.copy().verbose(false);
+        if (query == null) {
+            return options;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            String value = equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+            switch (name) {
+                case "order":
+                    options.order(GLCtoFNC.Order.valueOf(value.toUpperCase()));
+                    break;
+                case "binarize":
+                    options.binarization(GLCtoFNC.Binarization.valueOf(value.toUpperCase().replace('-', '_')));
+                    break;
+                case "max-productions":
+                    options.maxProductions(Long.parseLong(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException(name);
+            }
+        }
+        return options;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    // Chave do pedido exatamente como chegou: opções e bytes do corpo
+    static String rawKey(byte[] body, GLCtoFNC.Options options) {
+        MessageDigest digest = sha256();
+        digest.update(optionsHeader(options).getBytes(StandardCharsets.UTF_8));
+        digest.update(body);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Chave independente da ordem das regras e das alternativas: cada produção
+    // vira uma linha com o tipo de cada símbolo explícito, e as linhas são
+    // ordenadas antes do hash. O símbolo inicial, a sintaxe de saída e as
+    // opções que mudam o resultado também entram na chave.
+    static String canonicalKey(Grammar grammar, GLCtoFNC.Options options) {
+        SymbolTable symbols = grammar.symbols;
+        String[] lines = new String[grammar.size()];
+        StringBuilder line = new StringBuilder();
+        for (int p = 0; p < grammar.size(); p++) {
+            line.setLength(0);
+            line.append(symbols.name(grammar.head(p))).append('\u0000');
+            for (int i = 0; i < grammar.length(p); i++) {
+                int symbol = grammar.symbol(p, i);
+                line.append(symbols.isVariable(symbol) ? 'V' : 'T').append(symbols.name(symbol)).append('\u0001');
+            }
+            lines[p] = line.toString();
+        }
+        Arrays.sort(lines);
+
+        MessageDigest digest = sha256();
+        String header = symbols.name(grammar.start) + '\u0000' + symbols.tokenized + '\u0000' + optionsHeader(options);
+        digest.update(header.getBytes(StandardCharsets.UTF_8));
+        for (String canonical : lines) {
+            digest.update(canonical.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String optionsHeader(GLCtoFNC.Options options) {
+        return options.order + "\u0000" + options.binarization + '\u0000' + options.maxProductions + '\n';
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // LRU limitado pelos bytes estimados dos resultados e dos apelidos
+    // (chave do corpo -> chave canônica). Cada String conta 2 bytes por char,
+    // o pior caso de UTF-16, mais ENTRY_BYTES pela entrada do mapa e pelos
+    // cabeçalhos das Strings e de seus arrays. Os apelidos ficam num LRU à
+    // parte com um oitavo do limite; um apelido cujo resultado já saiu do
+    // cache só leva a uma falha.
+    static final class ResultCache {
+        static final long ENTRY_BYTES = 128;
+
+        private final long maxBytes;
+        private final long maxAliasBytes;
+        private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, String> aliases = new LinkedHashMap<>(16, 0.75f, true);
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private long bytes;
+        private long aliasBytes;
+        private long evictions;
+
+        ResultCache(long maxBytes) {
+            this(maxBytes - maxBytes / 8, maxBytes / 8);
+        }
+
+        ResultCache(long maxEntryBytes, long maxAliasBytes) {
+            this.maxBytes = maxEntryBytes;
+            this.maxAliasBytes = maxAliasBytes;
+        }
+
+        static long entryBytes(String key, String value) {
+            return ENTRY_BYTES + 2L * (key.length() + value.length());
+        }
+
+        // A chave canônica é a mesma String guardada em entries
+        static long aliasBytes(String rawKey) {
+            return ENTRY_BYTES + 2L * rawKey.length();
+        }
+
+        synchronized String get(String key) {
+            String value = entries.get(key);
+            (value != null ? hits : misses).incrementAndGet();
+            return value;
+        }
+
+        // Só conta o acerto; a falha é contada na busca pela chave canônica
+        synchronized String getByAlias(String rawKey) {
+            String key = aliases.get(rawKey);
+            String value = key == null ? null : entries.get(key);
+            if (value != null) {
+                hits.incrementAndGet();
+            }
+            return value;
+        }
+
+        synchronized void alias(String rawKey, String key) {
+            if (aliases.put(rawKey, key) == null) {
+                aliasBytes += aliasBytes(rawKey);
+            }
+            Iterator<String> eldest = aliases.keySet().iterator();
+            while (aliasBytes > maxAliasBytes && eldest.hasNext()) {
+                aliasBytes -= aliasBytes(eldest.next());
+                eldest.remove();
+            }
+        }
+
+        synchronized void put(String key, String value) {
+            long size = entryBytes(key, value);
+            if (size > maxBytes) {
+                return;
+            }
+            String previous = entries.put(key, value);
+            bytes += size - (previous == null ? 0 : entryBytes(key, previous));
+            Iterator<Map.Entry<String, String>> eldest = entries.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, String> entry = eldest.next();
+                bytes -= entryBytes(entry.getKey(), entry.getValue());
+                eldest.remove();
+                evictions++;
+            }
+        }
+
+        synchronized String stats() {
+            return "hits=" + hits.get() + " misses=" + misses.get() + " entries=" + entries.size() + " aliases=" + aliases.size()
+                    + " bytes=" + (bytes + aliasBytes) + " evictions=" + evictions;
+        }
+    }
+}
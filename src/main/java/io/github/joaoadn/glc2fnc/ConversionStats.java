@@ -0,0 +1,165 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import jdk.jfr.*;
+
+// Métricas por etapa da conversão: tempo, bytes alocados pela thread e o
+// tamanho da gramática (variáveis, produções e símbolos nos corpos) na
+// entrada e na saída. Conversões que compartilham o mesmo objeto (--batch)
+// são somadas por etapa. Cada etapa também gera um evento JFR
+// "glc2fnc.Stage" quando há uma gravação ativa, mesmo sem --stats.
+public final class ConversionStats {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+
+    private static final class Stage {
+        long count;
+        long nanos;
+        long allocatedBytes;
+        long variablesIn;
+        long productionsIn;
+        long symbolsIn;
+        long variablesOut;
+        long productionsOut;
+        long symbolsOut;
+    }
+
+    @Name("glc2fnc.Stage")
+    @Label("Conversion Stage")
+    @Category("GLC2FNC")
+    @Description("Uma etapa da conversão para a Forma Normal de Chomsky")
+    static final class StageEvent extends Event {
+        @Label("Stage")
+        String stage;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocatedBytes;
+
+        @Label("Variables In")
+        int variablesIn;
+
+        @Label("Productions In")
+        int productionsIn;
+
+        @Label("Symbols In")
+        int symbolsIn;
+
+        @Label("Variables Out")
+        int variablesOut;
+
+        @Label("Productions Out")
+        int productionsOut;
+
+        @Label("Symbols Out")
+        int symbolsOut;
+    }
+
+    // Executa a etapa medindo-a apenas quando há onde registrar o resultado
+    static Grammar measure(ConversionStats stats, String name, Grammar grammar, UnaryOperator<Grammar> step) {
+        return measure(stats, name, () -> step.apply(grammar), result -> new int[] {
+                GLCtoFNC.countVariables(grammar), grammar.size(), grammar.totalLength(),
+                GLCtoFNC.countVariables(result), result.size(), result.totalLength()});
+    }
+
+    // Para etapas que não vão de um Grammar a outro, como a atualização do
+    // IncrementalConverter: sizes dá variáveis, produções e símbolos da
+    // entrada e da saída, nessa ordem, depois que a etapa termina
+    static <T> T measure(ConversionStats stats, String name, Supplier<T> step, Function<T, int[]> sizes) {
+        StageEvent event = new StageEvent();
+        if (stats == null && !event.isEnabled()) {
+            return step.get();
+        }
+        long bytes = allocatedBytes();
+        long time = System.nanoTime();
+        event.begin();
+        T result = step.get();
+        event.end();
+        time = System.nanoTime() - time;
+        bytes = bytes < 0 ? -1 : allocatedBytes() - bytes;
+
+        int[] counts = sizes.apply(result);
+        if (event.shouldCommit()) {
+            event.stage = name;
+            event.allocatedBytes = bytes;
+            event.variablesIn = counts[0];
+            event.productionsIn = counts[1];
+            event.symbolsIn = counts[2];
+            event.variablesOut = counts[3];
+            event.productionsOut = counts[4];
+            event.symbolsOut = counts[5];
+            event.commit();
+        }
+        if (stats != null) {
+            synchronized (stats) {
+                Stage stage = stats.stages.computeIfAbsent(name, k -> new Stage());
+                stage.count++;
+                stage.nanos += time;
+                stage.allocatedBytes += bytes;
+                stage.variablesIn += counts[0];
+                stage.productionsIn += counts[1];
+                stage.symbolsIn += counts[2];
+                stage.variablesOut += counts[3];
+                stage.productionsOut += counts[4];
+                stage.symbolsOut += counts[5];
+            }
+        }
+        return result;
+    }
+
+    // -1 quando a JVM não mede a alocação por thread
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    // Variáveis, produções e símbolos de entrada e de saída de uma etapa,
+    // somados entre as conversões, ou null quando ela não rodou
+    synchronized long[] counts(String name) {
+        Stage stage = stages.get(name);
+        return stage == null ? null : new long[] {stage.variablesIn, stage.productionsIn, stage.symbolsIn,
+                stage.variablesOut, stage.productionsOut, stage.symbolsOut};
+    }
+
+    // Tabela para a saída de --stats
+    public synchronized String report() {
+        StringBuilder report = new StringBuilder(String.format("%-8s %10s %12s %22s %24s %24s%n",
+                "Etapa", "Tempo (ms)", "Alocado (MB)", "Variáveis", "Produções", "Símbolos"));
+        stages.forEach((name, stage) -> report.append(String.format("%-8s %10.2f %12s %9d -> %-9d %10d -> %-10d %10d -> %-10d%n",
+                name, stage.nanos / 1e6, stage.allocatedBytes < 0 ? "?" : String.format("%.2f", stage.allocatedBytes / 1048576.0),
+                stage.variablesIn, stage.variablesOut, stage.productionsIn, stage.productionsOut,
+                stage.symbolsIn, stage.symbolsOut)));
+        return report.toString();
+    }
+
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{\"stages\":[");
+        String separator = "";
+        for (Map.Entry<String, Stage> entry : stages.entrySet()) {
+            Stage stage = entry.getValue();
+            json.append(separator).append("{\"stage\":\"").append(entry.getKey()).append('"')
+                    .append(",\"conversions\":").append(stage.count)
+                    .append(",\"nanos\":").append(stage.nanos)
+                    .append(",\"allocatedBytes\":").append(stage.allocatedBytes)
+                    .append(",\"variablesIn\":").append(stage.variablesIn)
+                    .append(",\"productionsIn\":").append(stage.productionsIn)
+                    .append(",\"symbolsIn\":").append(stage.symbolsIn)
+                    .append(",\"variablesOut\":").append(stage.variablesOut)
+                    .append(",\"productionsOut\":").append(stage.productionsOut)
+                    .append(",\"symbolsOut\":").append(stage.symbolsOut)
+                    .append('}');
+            separator = ",";
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,416 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.nio.IntBuffer;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Reconhecedor CYK sobre a gramática na FNC produzida pela conversão. Cada
+// célula da tabela é um conjunto de variáveis em bits (words longs por
+// célula), e as produções A -> BC ficam agrupadas pela primeira variável: para
+// cada B da célula da esquerda, um AND com a máscara dos C possíveis descarta
+// de uma vez os pares que não ocorrem na célula da direita, e as cabeças dos
+// pares restantes entram na célula com OR palavra a palavra.
+//
+// A tabela é um único array com duas cópias de cada célula: uma em linhas por
+// posição inicial e outra em linhas por posição final. Ao preencher o trecho
+// [i, i + length), as células da esquerda ([i, i + split)) são consecutivas na
+// linha de i e as da direita ([i + split, i + length)) na linha do fim, então
+// a varredura das divisões lê memória contígua. As células de uma diagonal
+// (mesmo comprimento) não dependem umas das outras; em entradas longas elas
+// podem ser divididas entre as threads de um ForkJoinPool.
+//
+// As tabelas podem ser montadas a partir do modelo interno ou direto das
+// seções de um CnfArtifact mapeado, sem reconstruir a gramática.
+public final class CykRecognizer {
+
+    // Trabalho mínimo (divisões examinadas) de uma tarefa paralela
+    private static final int PARALLEL_GRAIN = 1 << 14;
+
+    private final boolean tokenized;
+    private final int words;
+    private final int startBit;
+    private final boolean acceptsEmpty;
+
+    // Cabeças das produções A -> a e nome, por id do terminal (null se não houver)
+    private final long[][] terminalHeads;
+    private final String[] terminalNames;
+
+    // Pares (B, C) agrupados por B em formato CSR: pairSecond[k] é o C do par
+    // k, pairHeads[k * words ..] o conjunto das variáveis A com A -> BC e
+    // secondMask[B * words ..] o conjunto dos C que seguem B em algum par
+    private final int[] pairBegin;
+    private final int[] pairSecond;
+    private final long[] pairHeads;
+    private final long[] secondMask;
+
+    // Tabela hash dos nomes dos terminais que aparecem em alguma produção
+    // A -> a, consultada sobre trechos da entrada sem criar Strings; guarda
+    // (id do terminal + 1)
+    private final int[] terminalSlots;
+
+    // Tabela e tokens reaproveitados entre as cadeias testadas por uma thread
+    static final class Buffers {
+        long[] chart = new long[0];
+        int[] tokens = new int[0];
+    }
+
+    public static CykRecognizer compile(List<String> rules, GLCtoFNC.Options options) {
+        List<String> lines = new ArrayList<>(rules.size());
+        for (String rule : rules) {
+            lines.add(rule.trim());
+        }
+        return new CykRecognizer(GLCtoFNC.processGrammar(GLCtoFNC.parseGrammar(lines), options));
+    }
+
+    CykRecognizer(Grammar cnf) {
+        SymbolTable symbols = cnf.symbols;
+        tokenized = symbols.tokenized;
+        int[] bit = new int[symbols.size()];
+        Arrays.fill(bit, -1);
+        int variables = 0;
+        for (int variable : cnf.headsInOrder()) {
+            bit[variable] = variables++;
+        }
+        words = Math.max(1, (variables + 63) >>> 6);
+        startBit = cnf.start >= 0 ? bit[cnf.start] : -1;
+
+        boolean empty = false;
+        terminalHeads = new long[symbols.size()][];
+        long[] keys = new long[cnf.size()];
+        int count = 0;
+        for (int p = 0; p < cnf.size(); p++) {
+            int length = cnf.length(p);
+            if (length == 0 && cnf.head(p) == cnf.start) {
+                empty = true;
+            } else if (length == 1 && !symbols.isVariable(cnf.symbol(p, 0))) {
+                int terminal = cnf.symbol(p, 0);
+                if (terminalHeads[terminal] == null) {
+                    terminalHeads[terminal] = new long[words];
+                }
+                set(terminalHeads[terminal], 0, bit[cnf.head(p)]);
+            } else if (length == 2 && symbols.isVariable(cnf.symbol(p, 0)) && symbols.isVariable(cnf.symbol(p, 1))) {
+                // Variáveis sem produções não geram nada e o par é descartado
+                if (bit[cnf.symbol(p, 0)] >= 0 && bit[cnf.symbol(p, 1)] >= 0) {
+                    keys[count++] = pairKey(bit[cnf.symbol(p, 0)], bit[cnf.symbol(p, 1)]);
+                }
+            } else {
+                throw new IllegalArgumentException("a gramática não está na FNC: produção de "
+                        + symbols.name(cnf.head(p)) + " com " + length + " símbolos");
+            }
+        }
+        acceptsEmpty = empty;
+
+        // Pares distintos em ordem, o que já os agrupa pela primeira variável
+        Arrays.sort(keys, 0, count);
+        int pairs = 0;
+        for (int k = 0; k < count; k++) {
+            if (pairs == 0 || keys[pairs - 1] != keys[k]) {
+                keys[pairs++] = keys[k];
+            }
+        }
+        pairBegin = new int[variables + 1];
+        pairSecond = new int[pairs];
+        for (int k = 0; k < pairs; k++) {
+            pairBegin[(int) (keys[k] >>> 32) + 1]++;
+            pairSecond[k] = (int) keys[k];
+        }
+        for (int b = 0; b < variables; b++) {
+            pairBegin[b + 1] += pairBegin[b];
+        }
+        pairHeads = new long[pairs * words];
+        secondMask = new long[variables * words];
+        for (int p = 0; p < cnf.size(); p++) {
+            if (cnf.length(p) == 2 && bit[cnf.symbol(p, 0)] >= 0 && bit[cnf.symbol(p, 1)] >= 0) {
+                int first = bit[cnf.symbol(p, 0)];
+                int second = bit[cnf.symbol(p, 1)];
+                set(pairHeads, Arrays.binarySearch(keys, 0, pairs, pairKey(first, second)) * words, bit[cnf.head(p)]);
+                set(secondMask, first * words, second);
+            }
+        }
+
+        terminalNames = new String[symbols.size()];
+        for (int terminal = 0; terminal < terminalHeads.length; terminal++) {
+            if (terminalHeads[terminal] != null) {
+                terminalNames[terminal] = symbols.name(terminal);
+            }
+        }
+        terminalSlots = indexTerminals(terminalNames);
+    }
+
+    // As seções do arquivo já estão agrupadas como as tabelas: os terminais
+    // com as variáveis de A -> a, e os pares (B, C) por B e em ordem de C. Os
+    // bits das variáveis seguem a ordem dos ids, e só os nomes dos terminais
+    // usados em A -> a são decodificados.
+    CykRecognizer(CnfArtifact artifact) {
+        int n = artifact.symbolCount();
+        tokenized = artifact.tokenized();
+        int[] bit = new int[n];
+        int variables = 0;
+        for (int symbol = 0; symbol < n; symbol++) {
+            bit[symbol] = artifact.isVariable(symbol) ? variables++ : -1;
+        }
+        words = Math.max(1, (variables + 63) >>> 6);
+        startBit = artifact.start() >= 0 ? bit[artifact.start()] : -1;
+        acceptsEmpty = artifact.acceptsEmpty();
+
+        terminalHeads = new long[n][];
+        terminalNames = new String[n];
+        for (int terminal = 0; terminal < n; terminal++) {
+            IntBuffer heads = bit[terminal] < 0 ? artifact.unary(terminal) : null;
+            if (heads != null && heads.hasRemaining()) {
+                terminalHeads[terminal] = new long[words];
+                terminalNames[terminal] = artifact.name(terminal);
+                while (heads.hasRemaining()) {
+                    set(terminalHeads[terminal], 0, bit[heads.get()]);
+                }
+            }
+        }
+
+        int pairs = artifact.pairCount();
+        pairBegin = new int[variables + 1];
+        pairSecond = new int[pairs];
+        pairHeads = new long[pairs * words];
+        secondMask = new long[variables * words];
+        for (int first = 0; first < n; first++) {
+            if (bit[first] < 0) {
+                continue;
+            }
+            pairBegin[bit[first]] = artifact.pairFrom(first);
+            for (int k = artifact.pairFrom(first); k < artifact.pairTo(first); k++) {
+                pairSecond[k] = bit[artifact.pairSecond(k)];
+                set(secondMask, bit[first] * words, pairSecond[k]);
+                IntBuffer heads = artifact.pairHeads(k);
+                while (heads.hasRemaining()) {
+                    set(pairHeads, k * words, bit[heads.get()]);
+                }
+            }
+        }
+        pairBegin[variables] = pairs;
+        terminalSlots = indexTerminals(terminalNames);
+    }
+
+    // Tabela hash dos nomes não nulos, com endereçamento aberto
+    private static int[] indexTerminals(String[] names) {
+        int terminals = 0;
+        for (String name : names) {
+            terminals += name == null ? 0 : 1;
+        }
+        int[] slots = new int[Integer.highestOneBit(Math.max(1, terminals) * 2) * 2];
+        for (int terminal = 0; terminal < names.length; terminal++) {
+            if (names[terminal] != null) {
+                int slot = hash(names[terminal], 0, names[terminal].length()) & (slots.length - 1);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & (slots.length - 1);
+                }
+                slots[slot] = terminal + 1;
+            }
+        }
+        return slots;
+    }
+
+    public boolean accepts(String input) {
+        return accepts(input, (ForkJoinPool) null);
+    }
+
+    // Com pool, cada diagonal da tabela é preenchida em paralelo
+    public boolean accepts(String input, ForkJoinPool pool) {
+        int[] tokens = tokenize(input);
+        return accepts(tokens, tokens.length, new long[chartSize(tokens.length)], pool);
+    }
+
+    // Sem alocação quando os buffers já comportam a cadeia
+    boolean accepts(String input, Buffers buffers) {
+        if (buffers.tokens.length < input.length()) {
+            buffers.tokens = new int[input.length()];
+        }
+        int n = tokenize(input, buffers.tokens);
+        int size = chartSize(n);
+        if (buffers.chart.length < size) {
+            buffers.chart = new long[size];
+        }
+        return accepts(buffers.tokens, n, buffers.chart, null);
+    }
+
+    int[] tokenize(String input) {
+        int[] tokens = new int[input.length()];
+        return Arrays.copyOf(tokens, tokenize(input, tokens));
+    }
+
+    // Terminais da entrada na mesma sintaxe da gramática: um caractere por
+    // terminal na sintaxe compacta, tokens separados por espaços na outra.
+    // Terminais desconhecidos viram -1. Retorna o número de tokens; o array
+    // precisa ter pelo menos input.length() posições.
+    int tokenize(String input, int[] tokens) {
+        int n = 0;
+        int i = 0;
+        while (i < input.length()) {
+            if (Character.isWhitespace(input.charAt(i))) {
+                i++;
+                continue;
+            }
+            int end = i + Character.charCount(input.codePointAt(i));
+            if (tokenized) {
+                while (end < input.length() && !Character.isWhitespace(input.charAt(end))) {
+                    end++;
+                }
+            }
+            char first = input.charAt(i);
+            if (tokenized && end - i > 1 && (first == '\'' || first == '"') && input.charAt(end - 1) == first) {
+                tokens[n++] = terminal(input, i + 1, end - 1);
+            } else {
+                tokens[n++] = terminal(input, i, end);
+            }
+            i = end;
+        }
+        return n;
+    }
+
+    private int terminal(String input, int from, int to) {
+        int mask = terminalSlots.length - 1;
+        for (int slot = hash(input, from, to) & mask; terminalSlots[slot] != 0; slot = (slot + 1) & mask) {
+            String name = terminalNames[terminalSlots[slot] - 1];
+            if (name.length() == to - from && name.regionMatches(0, input, from, to - from)) {
+                return terminalSlots[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(String text, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    // Número de longs da tabela para uma entrada com n terminais
+    int chartSize(int n) {
+        long size = Math.max(1L, (long) n * (n + 1)) * words;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("entrada longa demais para a tabela do CYK: " + n + " terminais");
+        }
+        return (int) size;
+    }
+
+    boolean accepts(int[] tokens, int n, long[] chart, ForkJoinPool pool) {
+        if (n == 0) {
+            return acceptsEmpty;
+        }
+        if (startBit < 0) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            long[] heads = tokens[i] >= 0 ? terminalHeads[tokens[i]] : null;
+            if (heads == null) {
+                return false;
+            }
+            System.arraycopy(heads, 0, chart, byStart(n, i, 1), words);
+            System.arraycopy(heads, 0, chart, byEnd(n, i + 1, 1), words);
+        }
+        for (int length = 2; length <= n; length++) {
+            int cells = n - length + 1;
+            if (pool == null || (long) cells * (length - 1) < 2 * PARALLEL_GRAIN) {
+                fillCells(chart, n, length, 0, cells);
+            } else {
+                pool.invoke(new Diagonal(chart, n, length, 0, cells));
+            }
+        }
+        return (chart[byStart(n, 0, n) + (startBit >>> 6)] & (1L << startBit)) != 0;
+    }
+
+    // Preenche os trechos [i, i + length) com from <= i < to
+    private void fillCells(long[] chart, int n, int length, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int target = byStart(n, i, length);
+            Arrays.fill(chart, target, target + words, 0L);
+            int left = byStart(n, i, 1);
+            int right = byEnd(n, i + length, length - 1);
+            for (int split = 1; split < length; split++) {
+                combine(chart, left, right, target);
+                left += words;
+                right -= words;
+            }
+            System.arraycopy(chart, target, chart, byEnd(n, i + length, length), words);
+        }
+    }
+
+    // Divide uma diagonal ao meio até cada parte ter cerca de PARALLEL_GRAIN
+    // divisões a examinar
+    private final class Diagonal extends RecursiveAction {
+        private final long[] chart;
+        private final int n;
+        private final int length;
+        private final int from;
+        private final int to;
+
+        Diagonal(long[] chart, int n, int length, int from, int to) {
+            this.chart = chart;
+            this.n = n;
+            this.length = length;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if ((long) (to - from) * (length - 1) <= PARALLEL_GRAIN || to - from < 2) {
+                fillCells(chart, n, length, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Diagonal(chart, n, length, from, middle), new Diagonal(chart, n, length, middle, to));
+        }
+    }
+
+    private void combine(long[] chart, int left, int right, int target) {
+        for (int w = 0; w < words; w++) {
+            for (long bits = chart[left + w]; bits != 0; bits &= bits - 1) {
+                int first = (w << 6) + Long.numberOfTrailingZeros(bits);
+                if (!intersects(secondMask, first * words, chart, right)) {
+                    continue;
+                }
+                for (int k = pairBegin[first]; k < pairBegin[first + 1]; k++) {
+                    int second = pairSecond[k];
+                    if ((chart[right + (second >>> 6)] & (1L << second)) != 0) {
+                        for (int x = 0; x < words; x++) {
+                            chart[target + x] |= pairHeads[k * words + x];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean intersects(long[] mask, int maskOffset, long[] chart, int cellOffset) {
+        for (int x = 0; x < words; x++) {
+            if ((mask[maskOffset + x] & chart[cellOffset + x]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Trecho [i, i + length) na cópia por início: a linha de i tem os
+    // comprimentos 1 .. n - i e as linhas 0 .. i - 1 vêm antes
+    private int byStart(int n, int i, int length) {
+        long before = (long) i * n - (long) i * (i - 1) / 2;
+        return (int) ((before + length - 1) * words);
+    }
+
+    // Trecho [end - length, end) na cópia por fim, depois da cópia por início:
+    // a linha de end tem os comprimentos 1 .. end
+    private int byEnd(int n, int end, int length) {
+        long before = (long) n * (n + 1) / 2 + (long) (end - 1) * end / 2;
+        return (int) ((before + length - 1) * words);
+    }
+
+    private static long pairKey(int first, int second) {
+        return ((long) first << 32) | second;
+    }
+
+    private static void set(long[] bits, int offset, int bit) {
+        bits[offset + (bit >>> 6)] |= 1L << bit;
+    }
+}
@@ -0,0 +1,1621 @@
+//João Augusto Dias Neto 14A
+//Raynner Gabriel Taniguchi Silva 14A
+//Franciele de Souza Fernandes 14A
+//Daniel Assis Gonçalves 14A
+
+package io.github.joaoadn.glc2fnc;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.*;
+import java.util.stream.Collectors;
+
+public class GLCtoFNC {
+
+    static final String START_SYMBOL = "S'";
+    static final String INITIAL_VARIABLE = "S";
+    static final String LAMBDA = ".";
+    private static final long DEFAULT_MAX_PRODUCTIONS = 1_000_000;
+    // Códigos de saída da linha de comando
+    static final int FAILURE = 1;
+    static final int USAGE = 2;
+    // Mínimo de produções por fatia nas etapas paralelas
+    private static final int PARALLEL_GRAIN = 256;
+
+    // Ordem das etapas. CLASSIC remove as regras lambda antes de binarizar,
+    // o que pode gerar um número exponencial de produções em corpos longos
+    // com muitos símbolos anuláveis. POLYNOMIAL segue a ordem START, TERM,
+    // BIN, DEL, UNIT: com corpos de no máximo dois símbolos, cada produção
+    // gera no máximo três combinações e o tamanho da saída fica polinomial.
+    public enum Order {
+        CLASSIC, POLYNOMIAL
+    }
+
+    // Binarização das produções longas. RIGHT_FOLD dobra cada corpo da direita
+    // para a esquerda, compartilhando só sufixos idênticos. REPAIR substitui
+    // antes, de forma gulosa, o par de símbolos adjacentes mais frequente em
+    // toda a gramática (no estilo Re-Pair), o que reduz o número de variáveis
+    // T<n> e de regras binárias.
+    public enum Binarization {
+        RIGHT_FOLD, REPAIR
+    }
+
+    // Parâmetros da conversão, ajustados pela linha de comando ou pela API
+    public static final class Options {
+        long maxProductions = DEFAULT_MAX_PRODUCTIONS;
+        Order order = Order.CLASSIC;
+        Binarization binarization = Binarization.RIGHT_FOLD;
+        boolean verbose;
+        ConversionStats stats;
+        ForkJoinPool pool;
+        int verifyLength = -1;
+
+        public Options maxProductions(long maxProductions) {
+            this.maxProductions = maxProductions;
+            return this;
+        }
+
+        public Options order(Order order) {
+            this.order = order;
+            return this;
+        }
+
+        public Options binarization(Binarization binarization) {
+            this.binarization = binarization;
+            return this;
+        }
+
+        // As etapas não imprimem nada: a linha de comando lê o que USELESS e
+        // BIN removeram e criaram nas métricas e o escreve na saída de erro
+        public Options verbose(boolean verbose) {
+            this.verbose = verbose;
+            return this;
+        }
+
+        // Métricas por etapa; null desativa a medição
+        public Options stats(ConversionStats stats) {
+            this.stats = stats;
+            return this;
+        }
+
+        // Divide DEL e BIN (RIGHT_FOLD) entre as threads do pool; null mantém
+        // tudo na thread atual. A saída é a mesma da execução sequencial.
+        public Options parallel(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        // Ao fim da conversão, compara as cadeias de comprimento até
+        // maxLength geradas pela entrada e pela saída (etapa VERIFY) e lança
+        // LanguageMismatchException se diferirem; -1 desativa
+        public Options verify(int maxLength) {
+            this.verifyLength = maxLength;
+            return this;
+        }
+
+        Options copy() {
+            return new Options().maxProductions(maxProductions).order(order).binarization(binarization).verbose(verbose)
+                    .stats(stats).parallel(pool).verify(verifyLength);
+        }
+    }
+
+    // API para conversão no mesmo processo, sem arquivos temporários. Nenhum
+    // método guarda estado compartilhado, então podem ser chamados por várias
+    // threads ao mesmo tempo, desde que um Options não seja alterado enquanto
+    // estiver em uso.
+    public static String convert(String grammar) {
+        return convert(grammar, new Options());
+    }
+
+    public static String convert(String grammar, Options options) {
+        StringWriter output = new StringWriter();
+        try {
+            convert(new StringReader(grammar), output, options);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toString();
+    }
+
+    public static List<String> convert(List<String> rules, Options options) {
+        List<String> lines = new ArrayList<>(rules.size());
+        for (String rule : rules) {
+            lines.add(rule.trim());
+        }
+        Grammar grammar = processGrammar(parseGrammar(lines), options);
+        Grammar.Index byHead = grammar.indexByHead();
+        boolean compact = isCompact(grammar);
+        List<String> result = new ArrayList<>();
+        for (int variable : grammar.headsInOrder()) {
+            result.add(formatRule(grammar, byHead, variable, compact));
+        }
+        return result;
+    }
+
+    public static void convert(Reader input, Writer output, Options options) throws IOException {
+        Grammar grammar = processGrammar(readGrammar(new BufferedReader(input)), options);
+        BufferedWriter bw = new BufferedWriter(output);
+        writeGrammar(bw, grammar);
+        bw.flush();
+    }
+
+    public static void main(String[] args) {
+        int status = run(args);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    // A linha de comando sem o System.exit: 0 quando tudo deu certo, FAILURE
+    // quando a conversão ou um arquivo falhou e USAGE quando os argumentos
+    // não formam uma chamada válida
+    static int run(String[] args) {
+        Options options = new Options();
+        List<String> files = new ArrayList<>();
+        String batch = null;
+        String outputDir = null;
+        int jobs = 0;
+        int port = -1;
+        long cacheMegabytes = 64;
+        String statsJson = null;
+        boolean cyk = false;
+        boolean binary = false;
+        String strings = null;
+        boolean sample = false;
+        int length = -1;
+        long count = 1;
+        long seed = System.nanoTime();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--serve" -> port = (int) number(args, i++, 0, 65535);
+                    case "--cache-mb" -> cacheMegabytes = number(args, i++, 0, Long.MAX_VALUE >> 20);
+                    case "--batch" -> batch = value(args, i++);
+                    case "--out" -> outputDir = value(args, i++);
+                    case "--jobs" -> jobs = (int) number(args, i++, 0, Integer.MAX_VALUE);
+                    case "--max-productions" -> options.maxProductions = number(args, i++, 1, Long.MAX_VALUE);
+                    case "--binarize" -> options.binarization = choice(args, i++, Binarization.class);
+                    case "--verbose" -> options.verbose = true;
+                    case "--cyk" -> cyk = true;
+                    case "--sample" -> sample = true;
+                    case "--length" -> length = (int) number(args, i++, 0, Integer.MAX_VALUE);
+                    case "--count" -> count = number(args, i++, 0, Long.MAX_VALUE);
+                    case "--seed" -> seed = number(args, i++, Long.MIN_VALUE, Long.MAX_VALUE);
+                    case "--verify" -> options.verifyLength = (int) number(args, i++, 0, Integer.MAX_VALUE);
+                    case "--binary" -> binary = true;
+                    case "--strings" -> strings = value(args, i++);
+                    case "--stats" -> options.stats = new ConversionStats();
+                    case "--stats-json" -> statsJson = value(args, i++);
+                    case "--order" -> options.order = choice(args, i++, Order.class);
+                    default -> files.add(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            standardError().println("Erro: " + e.getMessage());
+            printUsage();
+            return USAGE;
+        }
+        if (port >= 0 && files.isEmpty()) {
+            try {
+                ConversionServer.run(port, cacheMegabytes << 20, options);
+            } catch (IOException e) {
+                standardError().println("Erro ao iniciar o servidor: " + e.getMessage());
+                return FAILURE;
+            }
+            return 0;
+        }
+        if (statsJson != null && options.stats == null) {
+            options.stats = new ConversionStats();
+        }
+        // --verbose lê das métricas o que cada etapa removeu ou criou, mesmo
+        // quando a tabela não foi pedida
+        boolean statsRequested = options.stats != null;
+        if (options.verbose && options.stats == null) {
+            options.stats = new ConversionStats();
+        }
+        if (batch != null && files.isEmpty()) {
+            try {
+                BatchConverter.run(batch, outputDir, jobs, options);
+                reportStats(options, statsRequested, statsJson);
+            } catch (IOException e) {
+                standardError().println("Erro ao processar arquivos: " + e.getMessage());
+                return FAILURE;
+            }
+            return 0;
+        }
+        if (cyk && !files.isEmpty()) {
+            try {
+                // Um arquivo FNC binário já está convertido: as tabelas saem do mapeamento
+                Path grammarFile = Paths.get(files.get(0));
+                CykRecognizer recognizer = CnfArtifact.isArtifact(grammarFile)
+                        ? new CykRecognizer(CnfArtifact.map(grammarFile))
+                        : new CykRecognizer(processGrammar(readGrammar(files.get(0)), options));
+                if (strings != null || files.size() == 1) {
+                    // Sem cadeias na linha de comando, lê uma por linha de --strings ou da entrada padrão
+                    try (BufferedReader input = strings == null || strings.equals("-")
+                            ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                            : Files.newBufferedReader(Paths.get(strings), StandardCharsets.UTF_8)) {
+                        MembershipStream.run(recognizer, input, new OutputStreamWriter(System.out, StandardCharsets.UTF_8),
+                                jobs);
+                    }
+                    reportStats(options, statsRequested, statsJson);
+                    return 0;
+                }
+                // --jobs divide cada diagonal da tabela entre as threads
+                ForkJoinPool pool = jobs > 1 ? new ForkJoinPool(jobs) : null;
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+                for (String input : files.subList(1, files.size())) {
+                    out.println((recognizer.accepts(input, pool) ? "ACEITA  " : "REJEITA ") + input);
+                }
+                out.flush();
+                if (pool != null) {
+                    pool.shutdown();
+                }
+                reportStats(options, statsRequested, statsJson);
+            } catch (IOException e) {
+                standardError().println("Erro ao processar arquivos: " + e.getMessage());
+                return FAILURE;
+            } catch (ConversionLimitException | LanguageMismatchException e) {
+                standardError().println("Erro: " + e.getMessage());
+                return FAILURE;
+            }
+            return 0;
+        }
+        if (sample && files.size() == 1 && length >= 0 && count >= 0) {
+            try {
+                StringSampler sampler = new StringSampler(processGrammar(readGrammar(files.get(0)), options), length);
+                StringSampler.run(sampler, length, count, seed, new OutputStreamWriter(System.out, StandardCharsets.UTF_8),
+                        jobs);
+                reportStats(options, statsRequested, statsJson);
+            } catch (IOException e) {
+                standardError().println("Erro ao processar arquivos: " + e.getMessage());
+                return FAILURE;
+            } catch (ConversionLimitException | LanguageMismatchException | IllegalArgumentException e) {
+                standardError().println("Erro: " + e.getMessage());
+                return FAILURE;
+            }
+            return 0;
+        }
+        if (files.size() != 2) {
+            printUsage();
+            return USAGE;
+        }
+
+        String inputFile = files.get(0);
+        String outputFile = files.get(1);
+
+        // --jobs divide as etapas DEL e BIN entre as threads
+        if (jobs > 1) {
+            options.pool = new ForkJoinPool(jobs);
+        }
+        try {
+            if (binary) {
+                CnfArtifact.write(processGrammar(readGrammar(inputFile), options), Paths.get(outputFile));
+            } else {
+                writeGrammar(outputFile, processGrammar(readGrammar(inputFile), options));
+            }
+            reportStats(options, statsRequested, statsJson);
+            return 0;
+        } catch (IOException e) {
+            standardError().println("Erro ao processar arquivos: " + e.getMessage());
+            return FAILURE;
+        } catch (ConversionLimitException | LanguageMismatchException e) {
+            standardError().println("Erro: " + e.getMessage());
+            return FAILURE;
+        } finally {
+            if (options.pool != null) {
+                options.pool.shutdown();
+            }
+        }
+    }
+
+    // O uso vai para a saída de erro: só aparece quando a chamada está errada
+    private static void printUsage() {
+        PrintStream err = standardError();
+        err.println("Uso: java GLCtoFNC [--max-productions N] [--order classic|polynomial] [--binarize right-fold|repair] [--verbose] [--stats] [--stats-json <arquivo>] [--verify k] [--binary] [--jobs N] <inputFile> <outputFile>");
+        err.println("     java GLCtoFNC [opções] --batch <diretório|glob|@manifesto> [--out <diretório>] [--jobs N]");
+        err.println("     java GLCtoFNC [opções] --serve <porta> [--cache-mb N]");
+        err.println("     java GLCtoFNC [opções] --cyk <inputFile> [--jobs N] [cadeia... | --strings <arquivo|->]");
+        err.println("     java GLCtoFNC [opções] --sample <inputFile> --length N [--count N] [--seed N] [--jobs N]");
+    }
+
+    private static String value(String[] args, int i) {
+        if (i + 1 >= args.length) {
+            throw new IllegalArgumentException("falta o valor de " + args[i]);
+        }
+        return args[i + 1];
+    }
+
+    private static long number(String[] args, int i, long min, long max) {
+        String text = value(args, i);
+        long number;
+        try {
+            number = Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(args[i] + " espera um número inteiro, não \"" + text + "\"");
+        }
+        if (number < min || number > max) {
+            throw new IllegalArgumentException(args[i] + " espera um valor entre " + min + " e " + max + ", não " + text);
+        }
+        return number;
+    }
+
+    // right-fold para RIGHT_FOLD, classic para CLASSIC
+    private static <E extends Enum<E>> E choice(String[] args, int i, Class<E> type) {
+        String text = value(args, i);
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().replace('_', '-').equalsIgnoreCase(text)) {
+                return constant;
+            }
+        }
+        List<String> names = new ArrayList<>();
+        for (E constant : type.getEnumConstants()) {
+            names.add(constant.name().toLowerCase().replace('_', '-'));
+        }
+        throw new IllegalArgumentException(args[i] + " espera " + String.join(" ou ", names) + ", não \"" + text + "\"");
+    }
+
+    // --stats imprime a tabela quando não há --stats-json; com ele, grava o JSON
+    private static void reportStats(Options options, boolean statsRequested, String statsJson) throws IOException {
+        if (options.verbose) {
+            reportStages(options.stats);
+        }
+        if (!statsRequested) {
+            return;
+        }
+        if (statsJson == null) {
+            standardOutput().print(options.stats.report());
+            return;
+        }
+        try (Writer writer = Files.newBufferedWriter(Paths.get(statsJson), StandardCharsets.UTF_8)) {
+            writer.write(options.stats.toJson());
+            writer.write(System.lineSeparator());
+        }
+    }
+
+    // As etapas não imprimem nada; --verbose resume USELESS e BIN na saída de
+    // erro, em UTF-8, para não se misturar à saída de --cyk e --sample
+    private static void reportStages(ConversionStats stats) {
+        PrintStream err = standardError();
+        long[] useless = stats.counts("USELESS");
+        if (useless != null) {
+            err.println("Símbolos inúteis: " + (useless[1] - useless[4]) + " produções e " + (useless[0] - useless[3])
+                    + " variáveis removidas");
+        }
+        long[] binarized = stats.counts("BIN");
+        if (binarized != null) {
+            err.println("Binarização: " + binarized[1] + " produções antes, " + binarized[4] + " depois ("
+                    + (binarized[3] - binarized[0]) + " variáveis novas)");
+        }
+    }
+
+    // Mensagens, relatórios e o uso saem em UTF-8, como os arquivos e as
+    // respostas de --cyk e --sample, qualquer que seja o charset da plataforma
+    static PrintStream standardOutput() {
+        return new PrintStream(System.out, true, StandardCharsets.UTF_8);
+    }
+
+    static PrintStream standardError() {
+        return new PrintStream(System.err, true, StandardCharsets.UTF_8);
+    }
+
+    // O texto é lido e convertido para o modelo interno uma única vez
+    // Arquivos são lidos em blocos por um FileChannel, em UTF-8
+    static Grammar readGrammar(String inputFile) throws IOException {
+        return GrammarReader.read(Paths.get(inputFile));
+    }
+
+    static Grammar readGrammar(BufferedReader br) throws IOException {
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = br.readLine()) != null) {
+            lines.add(line.trim());
+        }
+        return parseGrammar(lines);
+    }
+
+    static Grammar parseGrammar(List<String> lines) {
+        SymbolTable symbols = new SymbolTable();
+        symbols.tokenized = lines.stream().anyMatch(GLCtoFNC::isTokenizedRule);
+        Grammar grammar = new Grammar(symbols, -1);
+        for (String line : lines) {
+            parseLine(grammar, line);
+        }
+        setDefaultStart(grammar);
+        return grammar;
+    }
+
+    // Linhas sem "->" são ignoradas. A linha é lida por índices, sem
+    // substrings; só os nomes de símbolos novos viram Strings na tabela
+    static void parseLine(Grammar grammar, CharSequence line) {
+        int arrow = indexOfArrow(line);
+        if (arrow < 0) {
+            return;
+        }
+        int variable = grammar.symbols.intern(line, trimStart(line, 0, arrow), trimEnd(line, 0, arrow), true);
+        updateStart(grammar, variable);
+        if (grammar.symbols.tokenized) {
+            parseTokenizedRule(grammar, variable, line, arrow + 2);
+        } else {
+            parseRule(grammar, variable, line, arrow + 2);
+        }
+    }
+
+    // O símbolo inicial é S, se existir, ou a primeira variável lida
+    static void updateStart(Grammar grammar, int variable) {
+        if (grammar.start < 0 || grammar.symbols.name(variable).equals(INITIAL_VARIABLE)) {
+            grammar.start = variable;
+        }
+    }
+
+    // S' com regras e fora dos corpos é o símbolo inicial de uma saída da
+    // conversão, que assim é lida de volta com a mesma linguagem
+    static void setDefaultStart(Grammar grammar) {
+        int converted = grammar.symbols.lookup(START_SYMBOL, true);
+        if (converted >= 0 && isStartCandidate(grammar, converted)) {
+            grammar.start = converted;
+        }
+        if (grammar.start < 0) {
+            grammar.start = grammar.symbols.variable(INITIAL_VARIABLE);
+        }
+    }
+
+    private static boolean isStartCandidate(Grammar grammar, int variable) {
+        boolean head = false;
+        for (int p = 0; p < grammar.size(); p++) {
+            head |= grammar.head(p) == variable;
+            for (int i = 0; i < grammar.length(p); i++) {
+                if (grammar.symbol(p, i) == variable) {
+                    return false;
+                }
+            }
+        }
+        return head;
+    }
+
+    // Uma gramática usa a sintaxe de tokens quando alguma regra tem nome de
+    // variável com mais de uma letra ou símbolos separados por espaços
+    static boolean isTokenizedRule(CharSequence line) {
+        int arrow = indexOfArrow(line);
+        if (arrow < 0) {
+            return false;
+        }
+        int from = trimStart(line, 0, arrow);
+        int length = trimEnd(line, 0, arrow) - from;
+        if (length > 2 || (length == 2 && line.charAt(from + 1) != '\'')) {
+            return true;
+        }
+        for (int i = arrow + 2; i <= line.length(); i++) {
+            int end = i;
+            while (end < line.length() && line.charAt(end) != '|') {
+                end++;
+            }
+            for (int j = trimStart(line, i, end); j < trimEnd(line, i, end); j++) {
+                if (Character.isWhitespace(line.charAt(j)) || line.charAt(j) == '<') {
+                    return true;
+                }
+            }
+            i = end;
+        }
+        return false;
+    }
+
+    private static int indexOfArrow(CharSequence line) {
+        for (int i = 0; i + 1 < line.length(); i++) {
+            if (line.charAt(i) == '-' && line.charAt(i + 1) == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Limites de line[from, to) sem os caracteres que String.trim remove
+    private static int trimStart(CharSequence line, int from, int to) {
+        while (from < to && line.charAt(from) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimEnd(CharSequence line, int from, int to) {
+        while (to > from && line.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    // Sintaxe compacta: cada caractere é um símbolo, maiúsculas são variáveis
+    // e X' é uma única variável
+    private static void parseRule(Grammar grammar, int variable, CharSequence line, int from) {
+        int[] body = new int[line.length() - from];
+        int length = 0;
+        for (int i = from; i <= line.length(); i++) {
+            char c = i < line.length() ? line.charAt(i) : '|';
+            if (c == '|') {
+                grammar.add(variable, body, 0, length);
+                length = 0;
+            } else if (Character.isUpperCase(c) && i + 1 < line.length() && line.charAt(i + 1) == '\'') {
+                body[length++] = grammar.symbols.intern(line, i, i + 2, true);
+                i++;
+            } else if (Character.isUpperCase(c)) {
+                body[length++] = grammar.symbols.intern(line, i, i + 1, true);
+            } else if (c != '.' && !Character.isWhitespace(c)) {
+                body[length++] = grammar.symbols.intern(line, i, i + 1, false);
+            }
+        }
+    }
+
+    // Sintaxe de tokens: símbolos separados por espaços, variáveis escritas
+    // como <Nome> ou começando com maiúscula (Expr_12) e terminais entre
+    // aspas quando não puderem ser escritos diretamente
+    private static void parseTokenizedRule(Grammar grammar, int variable, CharSequence line, int from) {
+        int[] body = new int[line.length() - from];
+        int length = 0;
+        int i = from;
+        while (true) {
+            while (i < line.length() && isTokenSeparator(line.charAt(i))) {
+                i++;
+            }
+            if (i == line.length()) {
+                break;
+            }
+            int start = i;
+            while (i < line.length() && !isTokenSeparator(line.charAt(i))) {
+                i++;
+            }
+            char first = line.charAt(start);
+            if (i - start == 1 && first == '|') {
+                grammar.add(variable, body, 0, length);
+                length = 0;
+            } else if (i - start > 1 && (first == '\'' || first == '"') && line.charAt(i - 1) == first) {
+                body[length++] = grammar.symbols.intern(line, start + 1, i - 1, false);
+            } else if (i - start != 1 || first != LAMBDA.charAt(0)) {
+                body[length++] = grammar.symbols.intern(line, start, i, first == '<' || Character.isUpperCase(first));
+            }
+        }
+        grammar.add(variable, body, 0, length);
+    }
+
+    // Os mesmos separadores do StringTokenizer
+    private static boolean isTokenSeparator(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isQuoted(String token) {
+        char first = token.charAt(0);
+        return token.length() > 1 && (first == '\'' || first == '"') && token.charAt(token.length() - 1) == first;
+    }
+
+    private static boolean isVariableToken(String token) {
+        return token.charAt(0) == '<' || Character.isUpperCase(token.charAt(0));
+    }
+
+    static String formatToken(SymbolTable symbols, int symbol) {
+        String name = symbols.name(symbol);
+        if (symbols.isVariable(symbol)) {
+            return name;
+        }
+        boolean plain = !name.isEmpty() && !name.equals(LAMBDA) && !name.equals("|") && !isQuoted(name)
+                && !isVariableToken(name) && name.chars().noneMatch(Character::isWhitespace);
+        if (plain) {
+            return name;
+        }
+        return name.indexOf('\'') < 0 ? "'" + name + "'" : '"' + name + '"';
+    }
+
+    // O modelo interno só volta a ser texto na escrita do arquivo de saída
+    static void writeGrammar(String outputFile, Grammar grammar) throws IOException {
+        GrammarWriter.write(Paths.get(outputFile), grammar);
+    }
+
+    static void writeGrammar(BufferedWriter bw, Grammar grammar) throws IOException {
+        Grammar.Index byHead = grammar.indexByHead();
+        boolean compact = isCompact(grammar);
+        for (int variable : grammar.headsInOrder()) {
+            bw.write(formatRule(grammar, byHead, variable, compact));
+            bw.newLine();
+        }
+    }
+
+    // Uma gramática lida na sintaxe compacta só é escrita nela se todos os
+    // seus símbolos puderem ser lidos de volta: variáveis X ou X', terminais de
+    // um caractere e nenhum ' logo depois de uma variável X. Caso contrário a
+    // saída inteira usa a sintaxe de tokens.
+    static boolean isCompact(Grammar grammar) {
+        SymbolTable symbols = grammar.symbols;
+        if (symbols.tokenized) {
+            return false;
+        }
+        for (int p = 0; p < grammar.size(); p++) {
+            if (!isCompactName(symbols, grammar.head(p))) {
+                return false;
+            }
+            for (int i = 0; i < grammar.length(p); i++) {
+                int symbol = grammar.symbol(p, i);
+                if (!isCompactName(symbols, symbol) || (i > 0 && symbols.name(symbol).equals("'")
+                        && symbols.name(grammar.symbol(p, i - 1)).length() == 1
+                        && symbols.isVariable(grammar.symbol(p, i - 1)))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    static boolean isCompactName(SymbolTable symbols, int symbol) {
+        return isCompactName(symbols.name(symbol), symbols.isVariable(symbol));
+    }
+
+    static boolean isCompactName(String name, boolean variable) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        if (variable) {
+            return Character.isUpperCase(name.charAt(0))
+                    && (name.length() == 1 || (name.length() == 2 && name.charAt(1) == '\''));
+        }
+        char c = name.charAt(0);
+        return name.length() == 1 && !Character.isUpperCase(c) && !Character.isWhitespace(c)
+                && c != '.' && c != '|' && c != '<';
+    }
+
+    static String formatRule(Grammar grammar, Grammar.Index byHead, int variable, boolean compact) {
+        return appendRule(new StringBuilder(), grammar, byHead, variable, compact).toString();
+    }
+
+    static StringBuilder appendRule(StringBuilder rule, Grammar grammar, Grammar.Index byHead, int variable,
+            boolean compact) {
+        int from = byHead.from(variable);
+        return appendRule(rule, grammar.symbols.name(variable), byHead.to(variable) - from,
+                k -> grammar.length(byHead.get(from + k)) == 0,
+                (r, k) -> appendProduction(r, grammar.symbols, grammar.body(byHead.get(from + k)), compact));
+    }
+
+    // "cabeça -> alternativa | ...", com as count alternativas escritas por
+    // alternative, exceto as lambda, que viram uma só no fim
+    static StringBuilder appendRule(StringBuilder rule, String head, int count, IntPredicate lambda,
+            ObjIntConsumer<StringBuilder> alternative) {
+        rule.append(head).append(" -> ");
+        boolean hasLambda = false;
+        boolean first = true;
+        for (int k = 0; k < count; k++) {
+            if (lambda.test(k)) {
+                hasLambda = true;
+                continue;
+            }
+            rule.append(first ? "" : " | ");
+            alternative.accept(rule, k);
+            first = false;
+        }
+        // A produção lambda sempre vai por último
+        if (hasLambda) {
+            rule.append(first ? "" : " | ").append(LAMBDA);
+        }
+        return rule;
+    }
+
+    private static StringBuilder appendProduction(StringBuilder rule, SymbolTable symbols, int[] production,
+            boolean compact) {
+        if (production.length == 0) {
+            rule.append(LAMBDA);
+        }
+        for (int i = 0; i < production.length; i++) {
+            if (compact) {
+                rule.append(symbols.name(production[i]));
+            } else {
+                rule.append(i > 0 ? " " : "").append(formatToken(symbols, production[i]));
+            }
+        }
+        return rule;
+    }
+
+    static Grammar processGrammar(Grammar grammar, Options options) {
+        Grammar converted = convertStages(grammar, options);
+        if (options.verifyLength >= 0) {
+            ConversionStats.measure(options.stats, "VERIFY", converted, g -> verifyLanguage(grammar, g, options.verifyLength));
+        }
+        return converted;
+    }
+
+    static Grammar verifyLanguage(Grammar original, Grammar converted, int maxLength) {
+        String difference = LanguageChecker.findDifference(original, converted, maxLength);
+        if (difference != null) {
+            throw new LanguageMismatchException("a gramática convertida não é equivalente à original: " + difference);
+        }
+        return converted;
+    }
+
+    private static Grammar convertStages(Grammar grammar, Options options) {
+        ConversionStats stats = options.stats;
+        if (options.order == Order.POLYNOMIAL) {
+            grammar = ConversionStats.measure(stats, "START", grammar, GLCtoFNC::removeInitialRecursion);
+            grammar = ConversionStats.measure(stats, "TERM", grammar, GLCtoFNC::replaceTerminalsWithVariables);
+            grammar = ConversionStats.measure(stats, "BIN", grammar, g -> convertToBinaryRules(g, options));
+            grammar = ConversionStats.measure(stats, "DEL", grammar, g -> removeLambdaRules(g, options));
+            grammar = ConversionStats.measure(stats, "UNIT", grammar, GLCtoFNC::removeChainRules);
+            grammar = ConversionStats.measure(stats, "USELESS", grammar, GLCtoFNC::removeUselessSymbols);
+            return grammar;
+        }
+        grammar = ConversionStats.measure(stats, "START", grammar, GLCtoFNC::removeInitialRecursion);
+        grammar = ConversionStats.measure(stats, "DEL", grammar, g -> removeLambdaRules(g, options));
+        grammar = ConversionStats.measure(stats, "UNIT", grammar, GLCtoFNC::removeChainRules);
+        grammar = ConversionStats.measure(stats, "USELESS", grammar, GLCtoFNC::removeUselessSymbols);
+        grammar = ConversionStats.measure(stats, "TERM", grammar, GLCtoFNC::replaceTerminalsWithVariables);
+        grammar = ConversionStats.measure(stats, "BIN", grammar, g -> convertToBinaryRules(g, options));
+        return grammar;
+    }
+
+
+    static Grammar removeInitialRecursion(Grammar grammar) {
+        int initial = grammar.start;
+        // Uma gramática já convertida não ganha outro símbolo inicial
+        if (grammar.symbols.name(initial).equals(START_SYMBOL) && isStartCandidate(grammar, initial)) {
+            return grammar;
+        }
+        int start = grammar.symbols.lookup(START_SYMBOL, true) < 0
+                ? grammar.symbols.variable(START_SYMBOL)
+                : grammar.symbols.freshVariable(START_SYMBOL);
+        Grammar newGrammar = new Grammar(grammar.symbols, start);
+        for (int p = 0; p < grammar.size(); p++) {
+            int variable = grammar.head(p);
+            if (variable == initial) {
+                newGrammar.add(start, initial);
+                if (grammar.isUnit(p) && grammar.symbol(p, 0) == initial) {
+                    continue;
+                }
+            }
+            newGrammar.add(variable, grammar.body(p));
+        }
+        return newGrammar;
+    }
+
+    // O limite de produções e o pool vêm das opções
+    static Grammar removeLambdaRules(Grammar grammar, Options options) {
+        long maxProductions = options.maxProductions;
+        ForkJoinPool pool = options.pool;
+        BitSet nullableVariables = identifyNullableVariables(grammar);
+        Grammar newGrammar = new Grammar(grammar.symbols, grammar.start);
+        int chunks = chunkCount(grammar, pool);
+
+        if (chunks > 1) {
+            // Cada fatia expande suas produções numa gramática própria. A junção
+            // na ordem das fatias descarta as repetidas exatamente como a versão
+            // sequencial, e o limite de produções é verificado nela. As fatias
+            // param quando a soma delas passa do limite; como essa soma conta
+            // as repetidas entre fatias, uma fatia interrompida sem que a junção
+            // passe do limite é retomada ali, na ordem sequencial.
+            Expansion[] expansions = expandInParallel(grammar, nullableVariables, maxProductions, pool, chunks);
+            for (Expansion expansion : expansions) {
+                for (int q = 0; q < expansion.grammar.size(); q++) {
+                    if (newGrammar.add(expansion.grammar, q) && newGrammar.size() > maxProductions) {
+                        int p = expansion.source[q];
+                        throw lambdaLimitExceeded(grammar.symbols, grammar.symbols.name(grammar.head(p)), grammar.body(p),
+                                nullableVariables, maxProductions);
+                    }
+                }
+                if (expansion.stopped >= 0) {
+                    expandRange(grammar, newGrammar, expansion.stopped, grammar.size(), nullableVariables, maxProductions);
+                    break;
+                }
+            }
+        } else {
+            expandRange(grammar, newGrammar, 0, grammar.size(), nullableVariables, maxProductions);
+        }
+
+        if (nullableVariables.get(grammar.start)) {
+            newGrammar.add(grammar.start);
+        }
+
+        return newGrammar;
+    }
+
+    private static void expandRange(Grammar grammar, Grammar newGrammar, int from, int to, BitSet nullableVariables,
+                                    long maxProductions) {
+        int[] lastPosition = new int[grammar.symbols.size()];
+        Arrays.fill(lastPosition, -1);
+        for (int p = from; p < to; p++) {
+            if (grammar.length(p) > 0) {
+                generateCombinations(newGrammar, grammar.head(p), grammar.body(p), nullableVariables, lastPosition,
+                        maxProductions);
+            }
+        }
+    }
+
+    // Combinações das produções [from, to) e, para cada uma, a produção de
+    // origem. stopped é a produção em que a fatia parou, ou -1.
+    static final class Expansion {
+        final Grammar grammar;
+        int[] source = new int[16];
+        int stopped = -1;
+
+        Expansion(Grammar grammar) {
+            this.grammar = grammar;
+        }
+    }
+
+    // As fatias dividem um orçamento de maxProductions produções: cada
+    // combinação nova de qualquer fatia o consome, e todas param assim que
+    // ele acaba, então a memória das fatias juntas não passa muito do limite
+    static Expansion[] expandInParallel(Grammar grammar, BitSet nullableVariables, long maxProductions, ForkJoinPool pool,
+                                        int chunks) {
+        AtomicLong added = new AtomicLong();
+        List<ForkJoinTask<Expansion>> tasks = new ArrayList<>(chunks);
+        for (int k = 0; k < chunks; k++) {
+            int from = (int) ((long) grammar.size() * k / chunks);
+            int to = (int) ((long) grammar.size() * (k + 1) / chunks);
+            tasks.add(pool.submit(() -> expandChunk(grammar, from, to, nullableVariables, maxProductions, added)));
+        }
+        Expansion[] expansions = new Expansion[chunks];
+        for (int k = 0; k < chunks; k++) {
+            expansions[k] = tasks.get(k).join();
+        }
+        return expansions;
+    }
+
+    private static Expansion expandChunk(Grammar grammar, int from, int to, BitSet nullableVariables, long maxProductions,
+                                         AtomicLong added) {
+        Expansion expansion = new Expansion(new Grammar(grammar.symbols, grammar.start));
+        int[] lastPosition = new int[grammar.symbols.size()];
+        Arrays.fill(lastPosition, -1);
+        for (int p = from; p < to; p++) {
+            if (grammar.length(p) == 0) {
+                continue;
+            }
+            if (added.get() > maxProductions) {
+                expansion.stopped = p;
+                break;
+            }
+            int before = expansion.grammar.size();
+            try {
+                generateCombinations(expansion.grammar, grammar.head(p), grammar.body(p), nullableVariables, lastPosition,
+                        maxProductions, added);
+            } catch (ConversionLimitException e) {
+                expansion.stopped = p;
+            }
+            if (expansion.source.length < expansion.grammar.size()) {
+                expansion.source = Arrays.copyOf(expansion.source, Math.max(expansion.source.length * 2,
+                        expansion.grammar.size()));
+            }
+            Arrays.fill(expansion.source, before, expansion.grammar.size(), p);
+            if (expansion.stopped >= 0) {
+                break;
+            }
+        }
+        return expansion;
+    }
+
+    // Algoritmo linear: cada produção guarda quantos símbolos do corpo ainda
+    // não são anuláveis, e o índice reverso leva cada variável recém-anulável
+    // apenas às produções em que ela aparece
+    static BitSet identifyNullableVariables(Grammar grammar) {
+        BitSet nullableVariables = new BitSet(grammar.symbols.size());
+        Grammar.Index occurrences = grammar.indexByOccurrence();
+        int[] pending = new int[grammar.size()];
+        int[] queue = new int[grammar.symbols.size()];
+        int head = 0;
+        int tail = 0;
+
+        for (int p = 0; p < grammar.size(); p++) {
+            pending[p] = grammar.length(p);
+            if (pending[p] == 0 && !nullableVariables.get(grammar.head(p))) {
+                nullableVariables.set(grammar.head(p));
+                queue[tail++] = grammar.head(p);
+            }
+        }
+
+        while (head < tail) {
+            int variable = queue[head++];
+            for (int k = occurrences.from(variable); k < occurrences.to(variable); k++) {
+                int p = occurrences.get(k);
+                if (--pending[p] == 0 && !nullableVariables.get(grammar.head(p))) {
+                    nullableVariables.set(grammar.head(p));
+                    queue[tail++] = grammar.head(p);
+                }
+            }
+        }
+        return nullableVariables;
+    }
+
+    // Enumera apenas os subconjuntos de posições anuláveis. Cada resultado é
+    // gerado uma única vez, pela sua ocorrência mais à esquerda: um símbolo só
+    // é escolhido na primeira posição em que aparece desde o último símbolo
+    // mantido, já que escolher uma ocorrência posterior repetiria um resultado.
+    static void generateCombinations(Grammar newGrammar, int variable, int[] production, BitSet nullableVariables,
+                                     int[] lastPosition, long maxProductions) {
+        generateCombinations(newGrammar, variable, production, nullableVariables, lastPosition, maxProductions, null);
+    }
+
+    // Com added, cada combinação nova também consome o orçamento compartilhado
+    // pelas fatias, e a expansão para quando ele passa de maxProductions
+    private static void generateCombinations(Grammar newGrammar, int variable, int[] production,
+                                             BitSet nullableVariables, int[] lastPosition, long maxProductions,
+                                             AtomicLong added) {
+        int n = production.length;
+        boolean[] nullableFrom = new boolean[n + 1];
+        nullableFrom[n] = true;
+        for (int j = n - 1; j >= 0; j--) {
+            nullableFrom[j] = nullableFrom[j + 1] && nullableVariables.get(production[j]);
+        }
+        int[] previous = new int[n];
+        for (int j = 0; j < n; j++) {
+            previous[j] = lastPosition[production[j]];
+            lastPosition[production[j]] = j;
+        }
+        for (int symbol : production) {
+            lastPosition[symbol] = -1;
+        }
+        expandCombinations(newGrammar, variable, production, nullableVariables, previous, nullableFrom,
+                new int[n], 0, 0, maxProductions, added);
+    }
+
+    private static void expandCombinations(Grammar newGrammar, int variable, int[] production, BitSet nullableVariables,
+                                           int[] previous, boolean[] nullableFrom, int[] combination, int from, int length,
+                                           long maxProductions, AtomicLong added) {
+        for (int j = from; j < production.length; j++) {
+            if (previous[j] < from) {
+                combination[length] = production[j];
+                expandCombinations(newGrammar, variable, production, nullableVariables, previous, nullableFrom,
+                        combination, j + 1, length + 1, maxProductions, added);
+            }
+            if (!nullableVariables.get(production[j])) {
+                break;
+            }
+        }
+        if (nullableFrom[from] && length > 0 && newGrammar.add(variable, combination, 0, length)
+                && (newGrammar.size() > maxProductions || added != null && added.incrementAndGet() > maxProductions)) {
+            throw lambdaLimitExceeded(newGrammar.symbols, newGrammar.symbols.name(variable), production, nullableVariables,
+                    maxProductions);
+        }
+    }
+
+    // A cabeça vem por nome porque a reconversão incremental escreve o S'
+    // criado pela conversão com o nome que a conversão completa daria a ele
+    static ConversionLimitException lambdaLimitExceeded(SymbolTable symbols, String head, int[] production,
+                                                        BitSet nullableVariables, long maxProductions) {
+        int nullablePositions = 0;
+        for (int symbol : production) {
+            nullablePositions += nullableVariables.get(symbol) ? 1 : 0;
+        }
+        return new ConversionLimitException("a remoção de regras lambda ultrapassou o limite de " + maxProductions
+                + " produções ao expandir "
+                + appendProduction(new StringBuilder(head + " -> "), symbols, production, !symbols.tokenized)
+                + " (" + production.length + " símbolos, " + nullablePositions + " anuláveis)."
+                + " Use --max-productions para alterar o limite.");
+    }
+
+    // Cada variável recebe uma única vez as produções não unitárias de todas
+    // as variáveis alcançáveis por produções unitárias (pares unitários)
+    static Grammar removeChainRules(Grammar grammar) {
+        Grammar.Index byHead = grammar.indexByHead();
+        BitSet[] unitPairs = computeUnitPairs(grammar);
+        Grammar newGrammar = new Grammar(grammar.symbols, grammar.start);
+
+        Bodies bodies = (variable, action) -> {
+            for (int k = byHead.from(variable); k < byHead.to(variable); k++) {
+                action.accept(grammar.body(byHead.get(k)));
+            }
+        };
+        for (int variable : grammar.headsInOrder()) {
+            BitSet reachable = unitPairs[variable];
+            int[] targets = reachable == null ? new int[0] : reachable.stream().filter(t -> t != variable).toArray();
+            copyUnitClosure(newGrammar, variable, targets, bodies);
+        }
+        return newGrammar;
+    }
+
+    // As produções de cada variável, uma a uma e em ordem
+    interface Bodies {
+        void forEach(int variable, Consumer<int[]> action);
+    }
+
+    // UNIT para uma variável: as produções não unitárias dela e, na ordem de
+    // targets, as de cada variável alcançável por produções unitárias
+    static void copyUnitClosure(Grammar newGrammar, int variable, int[] targets, Bodies bodies) {
+        SymbolTable symbols = newGrammar.symbols;
+        Consumer<int[]> copy = body -> {
+            if (body.length != 1 || !symbols.isVariable(body[0])) {
+                newGrammar.add(variable, body);
+            }
+        };
+        bodies.forEach(variable, copy);
+        for (int target : targets) {
+            bodies.forEach(target, copy);
+        }
+    }
+
+    // Fecho do grafo de produções unitárias. As componentes fortemente conexas
+    // são encontradas uma vez (Tarjan, iterativo) e saem em ordem topológica
+    // reversa, então o conjunto de cada componente é a união dos seus membros
+    // com os conjuntos já prontos das componentes sucessoras. Variáveis sem
+    // produções unitárias ficam com null.
+    static BitSet[] computeUnitPairs(Grammar grammar) {
+        int n = grammar.symbols.size();
+        int[] edgeBegin = new int[n + 1];
+        for (int p = 0; p < grammar.size(); p++) {
+            if (grammar.isUnit(p)) {
+                edgeBegin[grammar.head(p) + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            edgeBegin[v + 1] += edgeBegin[v];
+        }
+        int[] fill = Arrays.copyOf(edgeBegin, n);
+        int[] edges = new int[edgeBegin[n]];
+        for (int p = 0; p < grammar.size(); p++) {
+            if (grammar.isUnit(p)) {
+                edges[fill[grammar.head(p)]++] = grammar.symbol(p, 0);
+            }
+        }
+
+        BitSet[] reach = new BitSet[n];
+        int[] order = new int[n];
+        int[] low = new int[n];
+        int[] nextEdge = new int[n];
+        int[] sccStack = new int[n];
+        int[] callStack = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(order, -1);
+        int counter = 0;
+        int sccTop = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (order[root] >= 0 || edgeBegin[root] == edgeBegin[root + 1]) {
+                continue;
+            }
+            int callTop = 0;
+            callStack[callTop++] = root;
+            order[root] = low[root] = counter++;
+            nextEdge[root] = edgeBegin[root];
+            sccStack[sccTop++] = root;
+            onStack[root] = true;
+
+            while (callTop > 0) {
+                int v = callStack[callTop - 1];
+                if (nextEdge[v] < edgeBegin[v + 1]) {
+                    int w = edges[nextEdge[v]++];
+                    if (order[w] < 0) {
+                        order[w] = low[w] = counter++;
+                        nextEdge[w] = edgeBegin[w];
+                        sccStack[sccTop++] = w;
+                        onStack[w] = true;
+                        callStack[callTop++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], order[w]);
+                    }
+                    continue;
+                }
+
+                callTop--;
+                if (callTop > 0) {
+                    int parent = callStack[callTop - 1];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+                if (low[v] != order[v]) {
+                    continue;
+                }
+
+                // v é a raiz de uma componente: todas as sucessoras externas
+                // já foram fechadas
+                BitSet component = new BitSet(n);
+                int first = sccTop;
+                do {
+                    int member = sccStack[--first];
+                    component.set(member);
+                } while (sccStack[first] != v);
+                for (int i = first; i < sccTop; i++) {
+                    int member = sccStack[i];
+                    for (int e = edgeBegin[member]; e < edgeBegin[member + 1]; e++) {
+                        int w = edges[e];
+                        if (onStack[w]) {
+                            continue;
+                        }
+                        if (reach[w] != null) {
+                            component.or(reach[w]);
+                        } else {
+                            component.set(w);
+                        }
+                    }
+                }
+                for (int i = first; i < sccTop; i++) {
+                    onStack[sccStack[i]] = false;
+                    reach[sccStack[i]] = component;
+                }
+                sccTop = first;
+            }
+        }
+        return reach;
+    }
+
+    // Remove símbolos inúteis em uma única etapa sobre o índice reverso. Cada
+    // produção conta as ocorrências de variáveis ainda não geradoras; quando
+    // uma variável passa a gerar, só as produções em que ela aparece são
+    // visitadas. Em seguida uma busca em largura a partir do símbolo inicial,
+    // usando apenas produções geradoras, encontra as variáveis alcançáveis.
+    static Grammar removeUselessSymbols(Grammar grammar) {
+        SymbolTable symbols = grammar.symbols;
+        Grammar.Index occurrences = grammar.indexByOccurrence();
+        Grammar.Index byHead = grammar.indexByHead();
+        BitSet generatingVariables = new BitSet(symbols.size());
+        int[] pending = new int[grammar.size()];
+        int[] queue = new int[symbols.size()];
+        int head = 0;
+        int tail = 0;
+
+        for (int p = 0; p < grammar.size(); p++) {
+            for (int i = 0; i < grammar.length(p); i++) {
+                if (symbols.isVariable(grammar.symbol(p, i))) {
+                    pending[p]++;
+                }
+            }
+            if (pending[p] == 0 && !generatingVariables.get(grammar.head(p))) {
+                generatingVariables.set(grammar.head(p));
+                queue[tail++] = grammar.head(p);
+            }
+        }
+        while (head < tail) {
+            int variable = queue[head++];
+            for (int k = occurrences.from(variable); k < occurrences.to(variable); k++) {
+                int p = occurrences.get(k);
+                if (--pending[p] == 0 && !generatingVariables.get(grammar.head(p))) {
+                    generatingVariables.set(grammar.head(p));
+                    queue[tail++] = grammar.head(p);
+                }
+            }
+        }
+
+        BitSet reachableVariables = new BitSet(symbols.size());
+        head = 0;
+        tail = 0;
+        if (generatingVariables.get(grammar.start)) {
+            reachableVariables.set(grammar.start);
+            queue[tail++] = grammar.start;
+        }
+        while (head < tail) {
+            int variable = queue[head++];
+            for (int k = byHead.from(variable); k < byHead.to(variable); k++) {
+                int p = byHead.get(k);
+                if (pending[p] > 0) {
+                    continue;
+                }
+                for (int i = 0; i < grammar.length(p); i++) {
+                    int symbol = grammar.symbol(p, i);
+                    if (symbols.isVariable(symbol) && !reachableVariables.get(symbol)) {
+                        reachableVariables.set(symbol);
+                        queue[tail++] = symbol;
+                    }
+                }
+            }
+        }
+
+        Grammar newGrammar = new Grammar(symbols, grammar.start);
+        for (int p = 0; p < grammar.size(); p++) {
+            if (pending[p] == 0 && reachableVariables.get(grammar.head(p))) {
+                newGrammar.add(grammar.head(p), grammar.body(p));
+            }
+        }
+
+        return newGrammar;
+    }
+
+    // Uma produção é geradora quando todas as variáveis do corpo geram
+    static boolean generates(SymbolTable symbols, int[] body, BitSet generatingVariables) {
+        for (int symbol : body) {
+            if (symbols.isVariable(symbol) && !generatingVariables.get(symbol)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int countVariables(Grammar grammar) {
+        BitSet variables = new BitSet(grammar.symbols.size());
+        for (int p = 0; p < grammar.size(); p++) {
+            variables.set(grammar.head(p));
+            for (int i = 0; i < grammar.length(p); i++) {
+                if (grammar.symbols.isVariable(grammar.symbol(p, i))) {
+                    variables.set(grammar.symbol(p, i));
+                }
+            }
+        }
+        return variables.cardinality();
+    }
+
+    static Grammar replaceTerminalsWithVariables(Grammar grammar) {
+        SymbolTable symbols = grammar.symbols;
+        int[] terminalToVariable = new int[symbols.size()];
+        Arrays.fill(terminalToVariable, -1);
+        Grammar newGrammar = new Grammar(symbols, grammar.start);
+        Grammar terminalRules = new Grammar(symbols, grammar.start);
+
+        // Primeiro, identificar quais terminais devem ser substituídos
+        boolean[] terminalsToReplace = new boolean[symbols.size()];
+        for (int p = 0; p < grammar.size(); p++) {
+            if (grammar.length(p) > 1) {
+                for (int i = 0; i < grammar.length(p); i++) {
+                    if (!symbols.isVariable(grammar.symbol(p, i))) {
+                        terminalsToReplace[grammar.symbol(p, i)] = true;
+                    }
+                }
+            }
+        }
+
+        // Criar variáveis para terminais e adicionar suas regras
+        BitSet usedVariables = new BitSet(symbols.size());
+        for (int p = 0; p < grammar.size(); p++) {
+            usedVariables.set(grammar.head(p));
+            for (int i = 0; i < grammar.length(p); i++) {
+                usedVariables.set(grammar.symbol(p, i));
+            }
+        }
+        List<Integer> terminals = new ArrayList<>();
+        for (int terminal = 0; terminal < terminalsToReplace.length; terminal++) {
+            if (terminalsToReplace[terminal]) {
+                terminals.add(terminal);
+            }
+        }
+        terminals.sort(Comparator.comparing(symbols::name));
+        String[] names = nameTerminalVariables(terminals.stream().map(symbols::name).collect(Collectors.toList()),
+                name -> {
+                    int variable = symbols.lookup(name, true);
+                    return variable >= 0 && usedVariables.get(variable);
+                },
+                name -> symbols.name(symbols.variable(name)),
+                base -> symbols.name(symbols.freshVariable(base)));
+        for (int i = 0; i < names.length; i++) {
+            terminalToVariable[terminals.get(i)] = symbols.variable(names[i]);
+            terminalRules.add(terminalToVariable[terminals.get(i)], terminals.get(i));
+        }
+
+        // Atualizar regras substituindo terminais por variáveis
+        for (int p = 0; p < grammar.size(); p++) {
+            int[] production = grammar.body(p);
+            if (production.length > 1) {
+                for (int i = 0; i < production.length; i++) {
+                    if (terminalToVariable[production[i]] >= 0) {
+                        production[i] = terminalToVariable[production[i]];
+                    }
+                }
+            }
+            newGrammar.add(grammar.head(p), production);
+        }
+
+        for (int p = 0; p < terminalRules.size(); p++) {
+            newGrammar.add(terminalRules.head(p), terminalRules.body(p));
+        }
+        return newGrammar;
+    }
+
+    // Nomes das variáveis de TERM para os terminais dados, já em ordem de
+    // nome. O preferido é o terminal em maiúsculas; se ele já estiver em uso
+    // na gramática (inUse) ou com outro terminal, um nome novo é gerado por
+    // fresh para não misturar as regras. Os nomes novos só são gerados
+    // depois dos preferidos, passados a create, para não tomarem a letra de
+    // outro terminal na sintaxe compacta.
+    static String[] nameTerminalVariables(List<String> terminals, Predicate<String> inUse, UnaryOperator<String> create,
+                                          UnaryOperator<String> fresh) {
+        String[] names = new String[terminals.size()];
+        Set<String> assigned = new HashSet<>();
+        for (int i = 0; i < names.length; i++) {
+            String name = variableNameFor(terminals.get(i));
+            if (!inUse.test(name) && assigned.add(name)) {
+                names[i] = create.apply(name);
+            }
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == null) {
+                names[i] = fresh.apply(variableNameFor(terminals.get(i)));
+            }
+        }
+        return names;
+    }
+
+    static String variableNameFor(String terminal) {
+        for (int i = 0; i < terminal.length(); i++) {
+            char c = terminal.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return "T";
+            }
+        }
+        return !terminal.isEmpty() && Character.isLetter(terminal.charAt(0)) ? terminal.toUpperCase() : "T";
+    }
+
+    static Grammar convertToBinaryRules(Grammar grammar, Options options) {
+        return options.binarization == Binarization.REPAIR
+                ? factorRepeatedPairs(grammar)
+                : foldLongProductions(grammar, options.pool);
+    }
+
+    private static Grammar foldLongProductions(Grammar grammar, ForkJoinPool pool) {
+        Grammar newGrammar = new Grammar(grammar.symbols, grammar.start);
+        Map<Long, Integer> ruleToVariableMap = new HashMap<>();
+        Grammar tempVarRules = new Grammar(grammar.symbols, grammar.start);
+        int chunks = chunkCount(grammar, pool);
+
+        if (chunks > 1) {
+            // As fatias dobram suas produções com pares numerados localmente;
+            // a junção, na ordem das fatias, dá nome T<n> a cada par novo na
+            // mesma ordem em que a versão sequencial o encontraria
+            List<ForkJoinTask<Fold>> tasks = new ArrayList<>(chunks);
+            for (int k = 0; k < chunks; k++) {
+                int from = (int) ((long) grammar.size() * k / chunks);
+                int to = (int) ((long) grammar.size() * (k + 1) / chunks);
+                tasks.add(pool.submit(() -> foldChunk(grammar, from, to)));
+            }
+            for (ForkJoinTask<Fold> task : tasks) {
+                Fold fold = task.join();
+                int[] variables = new int[fold.pairs];
+                for (int k = 0; k < fold.pairs; k++) {
+                    int second = fold.seconds[k] < 0 ? variables[~fold.seconds[k]] : fold.seconds[k];
+                    variables[k] = pairVariable(grammar.symbols, fold.firsts[k], second, ruleToVariableMap, tempVarRules);
+                }
+                for (int p = fold.from; p < fold.to; p++) {
+                    if (grammar.length(p) > 2) {
+                        newGrammar.add(grammar.head(p), grammar.symbol(p, 0), variables[~fold.tops[p - fold.from]]);
+                    } else {
+                        newGrammar.add(grammar, p);
+                    }
+                }
+            }
+        } else {
+            for (int p = 0; p < grammar.size(); p++) {
+                int[] production = grammar.body(p);
+                if (production.length > 2) {
+                    int lastVariable = foldRight(grammar.symbols, production, production.length, ruleToVariableMap, tempVarRules);
+                    newGrammar.add(grammar.head(p), production[0], lastVariable);
+                } else {
+                    newGrammar.add(grammar.head(p), production);
+                }
+            }
+        }
+
+        // Adiciona as regras das variáveis temporárias depois das demais
+        for (int p = 0; p < tempVarRules.size(); p++) {
+            newGrammar.add(tempVarRules.head(p), tempVarRules.body(p));
+        }
+        return newGrammar;
+    }
+
+    // Dobra à direita das produções [from, to). O par k de uma fatia é
+    // (firsts[k], seconds[k]), e um valor negativo ~j aponta para o par j da
+    // mesma fatia; tops guarda o par mais externo de cada produção longa.
+    private static final class Fold {
+        final int from;
+        final int to;
+        final int[] tops;
+        int[] firsts = new int[16];
+        int[] seconds = new int[16];
+        int pairs;
+
+        Fold(int from, int to) {
+            this.from = from;
+            this.to = to;
+            this.tops = new int[to - from];
+        }
+    }
+
+    private static Fold foldChunk(Grammar grammar, int from, int to) {
+        Fold fold = new Fold(from, to);
+        Map<Long, Integer> localPairs = new HashMap<>();
+        for (int p = from; p < to; p++) {
+            int length = grammar.length(p);
+            if (length <= 2) {
+                continue;
+            }
+            int lastVariable = grammar.symbol(p, length - 1);
+            for (int j = length - 2; j > 0; j--) {
+                int first = grammar.symbol(p, j);
+                Integer pair = localPairs.get(pairKey(first, lastVariable));
+                if (pair == null) {
+                    if (fold.pairs == fold.firsts.length) {
+                        fold.firsts = Arrays.copyOf(fold.firsts, fold.pairs * 2);
+                        fold.seconds = Arrays.copyOf(fold.seconds, fold.pairs * 2);
+                    }
+                    fold.firsts[fold.pairs] = first;
+                    fold.seconds[fold.pairs] = lastVariable;
+                    pair = ~fold.pairs++;
+                    localPairs.put(pairKey(first, lastVariable), pair);
+                }
+                lastVariable = pair;
+            }
+            fold.tops[p - from] = lastVariable;
+        }
+        return fold;
+    }
+
+    // Número de fatias das etapas paralelas: 1 sem pool ou com poucas produções
+    private static int chunkCount(Grammar grammar, ForkJoinPool pool) {
+        if (pool == null || pool.getParallelism() < 2) {
+            return 1;
+        }
+        return (int) Math.max(1, Math.min(pool.getParallelism() * 4L, grammar.size() / PARALLEL_GRAIN));
+    }
+
+    // Dobra production[1 .. length) da direita para a esquerda em variáveis
+    // T<n>, reaproveitando as que já representam o mesmo par
+    private static int foldRight(SymbolTable symbols, int[] production, int length, Map<Long, Integer> ruleToVariableMap,
+                                 Grammar tempVarRules) {
+        int lastVariable = production[length - 1];
+        for (int j = length - 2; j > 0; j--) {
+            lastVariable = pairVariable(symbols, production[j], lastVariable, ruleToVariableMap, tempVarRules);
+        }
+        return lastVariable;
+    }
+
+    private static int pairVariable(SymbolTable symbols, int first, int second, Map<Long, Integer> ruleToVariableMap,
+                                    Grammar tempVarRules) {
+        long subRule = pairKey(first, second);
+        Integer newNonTerminal = ruleToVariableMap.get(subRule);
+        if (newNonTerminal == null) {
+            newNonTerminal = symbols.freshVariable("T");
+            ruleToVariableMap.put(subRule, newNonTerminal);
+            tempVarRules.add(newNonTerminal, first, second);
+        }
+        return newNonTerminal;
+    }
+
+    private static long pairKey(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    // Fatoração gulosa de pares (Re-Pair): enquanto algum par adjacente
+    // aparecer pelo menos duas vezes nos corpos com mais de dois símbolos, o
+    // mais frequente vira uma variável T<n> e é substituído em todos eles. As
+    // contagens são mantidas de forma incremental: só os corpos que contêm o
+    // par escolhido são reescritos, e a fila de prioridade guarda entradas
+    // antigas que são descartadas ao sair. O que sobra é dobrado à direita.
+    //
+    // A escolha gulosa pode quebrar sufixos que a dobra à direita compartilharia
+    // e terminar com mais pares que ela. Por isso os pares só ganham nome no
+    // fim: se forem mais que os da dobra à direita, contados sem criar
+    // variáveis, a dobra é usada no lugar.
+    private static Grammar factorRepeatedPairs(Grammar grammar) {
+        SymbolTable symbols = grammar.symbols;
+        int[][] bodies = new int[grammar.size()][];
+        int[] lengths = new int[grammar.size()];
+        Map<Long, Integer> pairCounts = new HashMap<>();
+        Map<Long, List<Integer>> pairBodies = new HashMap<>();
+        // Maior contagem primeiro; empates pelo par, para a saída ser determinística
+        PriorityQueue<long[]> queue = new PriorityQueue<>((x, y) -> x[1] != y[1] ? Long.compare(y[1], x[1]) : Long.compare(x[0], y[0]));
+
+        for (int p = 0; p < grammar.size(); p++) {
+            if (grammar.length(p) > 2) {
+                bodies[p] = grammar.body(p);
+                lengths[p] = bodies[p].length;
+                countPairs(p, bodies[p], lengths[p], 1, pairCounts, pairBodies, queue);
+            }
+        }
+
+        PendingPairs pending = new PendingPairs(symbols.size());
+        int[] visited = new int[grammar.size()];
+        int round = 0;
+        while (!queue.isEmpty()) {
+            long[] entry = queue.poll();
+            long pair = entry[0];
+            int count = pairCounts.getOrDefault(pair, 0);
+            if (count != entry[1]) {
+                continue;
+            }
+            if (count < 2) {
+                break;
+            }
+            int first = (int) (pair >>> 32);
+            int second = (int) pair;
+            int variable = pending.variable(first, second);
+            List<Integer> containing = pairBodies.remove(pair);
+            if (containing == null) {
+                continue;
+            }
+            round++;
+            for (int p : containing) {
+                if (visited[p] == round || lengths[p] <= 2) {
+                    continue;
+                }
+                visited[p] = round;
+                countPairs(p, bodies[p], lengths[p], -1, pairCounts, pairBodies, queue);
+                lengths[p] = replacePair(bodies[p], lengths[p], first, second, variable);
+                if (lengths[p] > 2) {
+                    countPairs(p, bodies[p], lengths[p], 1, pairCounts, pairBodies, queue);
+                }
+            }
+        }
+
+        int[] tops = new int[grammar.size()];
+        for (int p = 0; p < grammar.size(); p++) {
+            if (bodies[p] != null && lengths[p] > 2) {
+                int lastVariable = bodies[p][lengths[p] - 1];
+                for (int j = lengths[p] - 2; j > 0; j--) {
+                    lastVariable = pending.variable(bodies[p][j], lastVariable);
+                }
+                tops[p] = lastVariable;
+            }
+        }
+        if (pending.size() > foldChunk(grammar, 0, grammar.size()).pairs) {
+            return foldLongProductions(grammar, null);
+        }
+
+        Grammar newGrammar = new Grammar(symbols, grammar.start);
+        for (int p = 0; p < grammar.size(); p++) {
+            if (bodies[p] == null) {
+                newGrammar.add(grammar.head(p), grammar.body(p));
+            } else if (lengths[p] > 2) {
+                newGrammar.add(grammar.head(p), bodies[p][0], tops[p]);
+            } else {
+                newGrammar.add(grammar.head(p), bodies[p], 0, lengths[p]);
+            }
+        }
+        for (int k = 0; k < pending.size(); k++) {
+            // freshVariable interna um símbolo novo por chamada, na ordem dos ids provisórios
+            int variable = symbols.freshVariable("T");
+            assert variable == pending.base + k;
+            newGrammar.add(variable, pending.firsts[k], pending.seconds[k]);
+        }
+        return newGrammar;
+    }
+
+    // Pares criados pela fatoração, com os ids que freshVariable daria a eles
+    // em ordem (base, base + 1, ...), sem ainda tocar na tabela de símbolos
+    private static final class PendingPairs {
+        final int base;
+        final Map<Long, Integer> ids = new HashMap<>();
+        int[] firsts = new int[16];
+        int[] seconds = new int[16];
+
+        PendingPairs(int base) {
+            this.base = base;
+        }
+
+        int variable(int first, int second) {
+            Integer id = ids.get(pairKey(first, second));
+            if (id == null) {
+                int k = ids.size();
+                if (k == firsts.length) {
+                    firsts = Arrays.copyOf(firsts, k * 2);
+                    seconds = Arrays.copyOf(seconds, k * 2);
+                }
+                firsts[k] = first;
+                seconds[k] = second;
+                id = base + k;
+                ids.put(pairKey(first, second), id);
+            }
+            return id;
+        }
+
+        int size() {
+            return ids.size();
+        }
+    }
+
+    private static void countPairs(int p, int[] body, int length, int delta, Map<Long, Integer> pairCounts,
+                                   Map<Long, List<Integer>> pairBodies, PriorityQueue<long[]> queue) {
+        for (int i = 0; i + 1 < length; i++) {
+            long pair = pairKey(body[i], body[i + 1]);
+            int count = pairCounts.merge(pair, delta, Integer::sum);
+            if (delta > 0) {
+                pairBodies.computeIfAbsent(pair, k -> new ArrayList<>()).add(p);
+            }
+            if (count >= 2) {
+                queue.add(new long[] {pair, count});
+            }
+        }
+    }
+
+    // Substitui da esquerda para a direita as ocorrências sem sobreposição do
+    // par e retorna o novo comprimento do corpo
+    private static int replacePair(int[] body, int length, int first, int second, int variable) {
+        int written = 0;
+        for (int i = 0; i < length; i++) {
+            if (i + 1 < length && body[i] == first && body[i + 1] == second) {
+                body[written++] = variable;
+                i++;
+            } else {
+                body[written++] = body[i];
+            }
+        }
+        return written;
+    }
+}
@@ -0,0 +1,207 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.util.*;
+
+// Modelo interno da gramática. As produções ficam em arrays planos: a cabeça
+// de cada produção em heads e o corpo em bodies[offsets[p] .. offsets[p + 1]).
+// Um corpo vazio representa a produção lambda ("."). Produções repetidas são
+// descartadas na inserção, o que substitui os HashSet de Strings das etapas.
+final class Grammar {
+
+    final SymbolTable symbols;
+    int start;
+
+    private int[] heads = new int[16];
+    private int[] offsets = new int[17];
+    private int[] bodies = new int[64];
+    private int size;
+
+    // Tabela hash com endereçamento aberto: guarda (índice da produção + 1)
+    private int[] slots = new int[32];
+
+    Grammar(SymbolTable symbols, int start) {
+        this.symbols = symbols;
+        this.start = start;
+    }
+
+    boolean add(int head, int... body) {
+        return add(head, body, 0, body.length);
+    }
+
+    boolean add(int head, int[] body, int from, int length) {
+        int mask = slots.length - 1;
+        int slot = hash(head, body, from, length) & mask;
+        while (slots[slot] != 0) {
+            if (matches(slots[slot] - 1, head, body, from, length)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == heads.length) {
+            heads = Arrays.copyOf(heads, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2 + 1);
+        }
+        int offset = offsets[size];
+        if (offset + length > bodies.length) {
+            bodies = Arrays.copyOf(bodies, Math.max(bodies.length * 2, offset + length));
+        }
+        System.arraycopy(body, from, bodies, offset, length);
+        heads[size] = head;
+        offsets[size + 1] = offset + length;
+        slots[slot] = ++size;
+
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return true;
+    }
+
+    // Copia a produção p de outra gramática
+    boolean add(Grammar other, int p) {
+        return add(other.heads[p], other.bodies, other.offsets[p], other.length(p));
+    }
+
+    void clear() {
+        Arrays.fill(slots, 0);
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Soma dos comprimentos dos corpos
+    int totalLength() {
+        return offsets[size];
+    }
+
+    int head(int p) {
+        return heads[p];
+    }
+
+    int length(int p) {
+        return offsets[p + 1] - offsets[p];
+    }
+
+    int symbol(int p, int i) {
+        return bodies[offsets[p] + i];
+    }
+
+    int[] body(int p) {
+        return Arrays.copyOfRange(bodies, offsets[p], offsets[p + 1]);
+    }
+
+    boolean isUnit(int p) {
+        return length(p) == 1 && symbols.isVariable(symbol(p, 0));
+    }
+
+    // Variáveis na ordem em que aparecem pela primeira vez como cabeça
+    int[] headsInOrder() {
+        BitSet seen = new BitSet(symbols.size());
+        int[] order = new int[symbols.size()];
+        int count = 0;
+        for (int p = 0; p < size; p++) {
+            if (!seen.get(heads[p])) {
+                seen.set(heads[p]);
+                order[count++] = heads[p];
+            }
+        }
+        return Arrays.copyOf(order, count);
+    }
+
+    // Produções agrupadas pela variável do lado esquerdo
+    Index indexByHead() {
+        int[] begin = new int[symbols.size() + 1];
+        for (int p = 0; p < size; p++) {
+            begin[heads[p] + 1]++;
+        }
+        for (int s = 0; s < symbols.size(); s++) {
+            begin[s + 1] += begin[s];
+        }
+        int[] fill = Arrays.copyOf(begin, begin.length);
+        int[] items = new int[size];
+        for (int p = 0; p < size; p++) {
+            items[fill[heads[p]]++] = p;
+        }
+        return new Index(begin, items);
+    }
+
+    // Índice reverso: para cada símbolo, as produções em cujo corpo ele aparece
+    // (uma entrada por ocorrência)
+    Index indexByOccurrence() {
+        int[] begin = new int[symbols.size() + 1];
+        for (int i = 0; i < offsets[size]; i++) {
+            begin[bodies[i] + 1]++;
+        }
+        for (int s = 0; s < symbols.size(); s++) {
+            begin[s + 1] += begin[s];
+        }
+        int[] fill = Arrays.copyOf(begin, begin.length);
+        int[] items = new int[offsets[size]];
+        for (int p = 0; p < size; p++) {
+            for (int i = offsets[p]; i < offsets[p + 1]; i++) {
+                items[fill[bodies[i]]++] = p;
+            }
+        }
+        return new Index(begin, items);
+    }
+
+    private boolean matches(int p, int head, int[] body, int from, int length) {
+        if (heads[p] != head || offsets[p + 1] - offsets[p] != length) {
+            return false;
+        }
+        int offset = offsets[p];
+        for (int i = 0; i < length; i++) {
+            if (bodies[offset + i] != body[from + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(int head, int[] body, int from, int length) {
+        int h = head * 0x9E3779B9;
+        for (int i = from; i < from + length; i++) {
+            h = (h ^ body[i]) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int p = 0; p < size; p++) {
+            int slot = hash(heads[p], bodies, offsets[p], length(p)) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = p + 1;
+        }
+    }
+
+    // Agrupamento em formato CSR: os itens do símbolo s estão em
+    // items[begin[s] .. begin[s + 1])
+    static final class Index {
+        final int[] begin;
+        final int[] items;
+
+        Index(int[] begin, int[] items) {
+            this.begin = begin;
+            this.items = items;
+        }
+
+        // Símbolos criados depois da construção do índice não têm itens
+        int from(int symbol) {
+            return symbol + 1 < begin.length ? begin[symbol] : 0;
+        }
+
+        int to(int symbol) {
+            return symbol + 1 < begin.length ? begin[symbol + 1] : 0;
+        }
+
+        int get(int k) {
+            return items[k];
+        }
+    }
+}
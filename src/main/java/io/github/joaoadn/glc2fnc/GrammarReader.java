@@ -0,0 +1,122 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+// Leitura de gramáticas de arquivos grandes. O arquivo passa em blocos por um
+// ByteBuffer direto de um FileChannel, sem guardar o texto inteiro no heap, e
+// cada linha é decodificada (UTF-8) num CharBuffer reaproveitado e
+// interpretada direto nele por GLCtoFNC.isTokenizedRule e GLCtoFNC.parseLine,
+// as mesmas regras da leitura de texto, sem criar uma String por linha.
+// A leitura supõe a sintaxe compacta e monta a gramática numa só passada; se
+// alguma regra mostrar que a sintaxe é a de tokens, ela para ali e o arquivo
+// é lido de novo. Como a sintaxe de tokens costuma aparecer já na primeira
+// regra, a releitura quase nunca passa do começo do arquivo.
+final class GrammarReader {
+
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private interface LineHandler {
+        // Retorna false para interromper a leitura
+        boolean line(CharSequence line);
+    }
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    static Grammar read(Path path) throws IOException {
+        Grammar compact = new Grammar(new SymbolTable(), -1);
+        boolean[] tokenized = new boolean[1];
+        new GrammarReader().forEachLine(path, line -> {
+            if (GLCtoFNC.isTokenizedRule(line)) {
+                tokenized[0] = true;
+                return false;
+            }
+            GLCtoFNC.parseLine(compact, line);
+            return true;
+        });
+        if (!tokenized[0]) {
+            GLCtoFNC.setDefaultStart(compact);
+            return compact;
+        }
+
+        SymbolTable symbols = new SymbolTable();
+        symbols.tokenized = true;
+        Grammar grammar = new Grammar(symbols, -1);
+        new GrammarReader().forEachLine(path, line -> {
+            GLCtoFNC.parseLine(grammar, line);
+            return true;
+        });
+        GLCtoFNC.setDefaultStart(grammar);
+        return grammar;
+    }
+
+    private void forEachLine(Path path, LineHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            boolean first = true;
+            while (true) {
+                boolean end = channel.read(buffer) < 0;
+                buffer.flip();
+                int start = 0;
+                // Marca de ordem de bytes no início do arquivo
+                if (first && buffer.limit() >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB
+                        && buffer.get(2) == (byte) 0xBF) {
+                    start = 3;
+                }
+                first = false;
+                for (int i = start; i < buffer.limit(); i++) {
+                    byte b = buffer.get(i);
+                    if (b == '\n' || b == '\r') {
+                        if (!handler.line(decode(buffer, start, i))) {
+                            return;
+                        }
+                        start = i + 1;
+                    }
+                }
+                if (end) {
+                    if (start < buffer.limit()) {
+                        handler.line(decode(buffer, start, buffer.limit()));
+                    }
+                    return;
+                }
+                // O pedaço de linha que sobrou vai para o início do buffer;
+                // uma linha maior que o buffer inteiro faz o buffer crescer
+                buffer.position(start);
+                buffer.compact();
+                if (!buffer.hasRemaining()) {
+                    ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                    buffer.flip();
+                    larger.put(buffer);
+                    buffer = larger;
+                }
+            }
+        }
+    }
+
+    // A linha sem os espaços das pontas, válida até a próxima chamada
+    private CharSequence decode(ByteBuffer buffer, int from, int to) {
+        // Em UTF-8 cada byte vira no máximo um char
+        if (chars.capacity() < to - from) {
+            chars = CharBuffer.allocate(Math.max(to - from, chars.capacity() * 2));
+        }
+        chars.clear();
+        decoder.reset();
+        decoder.decode(buffer.slice(from, to - from), chars, true);
+        decoder.flush(chars);
+        chars.flip();
+        while (chars.hasRemaining() && chars.get(chars.position()) <= ' ') {
+            chars.position(chars.position() + 1);
+        }
+        while (chars.hasRemaining() && chars.get(chars.limit() - 1) <= ' ') {
+            chars.limit(chars.limit() - 1);
+        }
+        return chars;
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+// Escrita da gramática convertida. Cada regra é montada num mesmo
+// StringBuilder, codificada em UTF-8 num ByteBuffer direto reaproveitado e
+// gravada no FileChannel quando o buffer enche.
+final class GrammarWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private GrammarWriter() {
+    }
+
+    static void write(Path path, Grammar grammar) throws IOException {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(256);
+        StringBuilder rule = new StringBuilder();
+        String separator = System.lineSeparator();
+        Grammar.Index byHead = grammar.indexByHead();
+        boolean compact = GLCtoFNC.isCompact(grammar);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int variable : grammar.headsInOrder()) {
+                rule.setLength(0);
+                GLCtoFNC.appendRule(rule, grammar, byHead, variable, compact).append(separator);
+                if (chars.capacity() < rule.length()) {
+                    chars = CharBuffer.allocate(Math.max(rule.length(), chars.capacity() * 2));
+                }
+                chars.clear();
+                rule.getChars(0, rule.length(), chars.array(), 0);
+                chars.limit(rule.length());
+
+                encoder.reset();
+                while (encoder.encode(chars, out, true).isOverflow()) {
+                    drain(out, channel);
+                }
+                while (encoder.flush(out).isOverflow()) {
+                    drain(out, channel);
+                }
+            }
+            drain(out, channel);
+        }
+    }
+
+    private static void drain(ByteBuffer out, FileChannel channel) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+}
@@ -0,0 +1,1705 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+// Reconversão incremental para gramáticas grandes que mudam poucas regras por
+// vez, na ordem CLASSIC. Entre uma atualização e outra
+// ficam guardados, por variável, as produções de cada etapa (as das regras,
+// sem lambda, sem unitárias, só as geradoras e as da saída), os conjuntos de
+// anuláveis, geradoras e alcançáveis, o grafo das produções unitárias, os
+// terminais usados em corpos longos e os pares da binarização. Uma edição
+// marca as variáveis das linhas alteradas, e cada etapa só refaz as marcadas
+// e as que dependem delas, encontradas por índices reversos:
+//
+//  - os três conjuntos são corrigidos por DerivedSet, sem recalcular tudo;
+//  - a remoção de lambda refaz as variáveis com regras novas ou com algum
+//    símbolo do corpo que mudou de anulabilidade;
+//  - a de unitárias refaz as variáveis que alcançam, por produções
+//    unitárias, uma variável cujas produções sem lambda mudaram;
+//  - os pares T<n> são compartilhados entre as produções, com contagem de
+//    referências.
+//
+// O que depende da gramática inteira (a ordem das cabeças, a ordem em que os
+// símbolos aparecem, a numeração dos T<n> e os nomes criados) é refeito a
+// cada atualização em passagens lineares sobre arrays, e o texto de uma regra
+// só é montado de novo quando algo nela mudou. A saída é a mesma de uma
+// conversão completa. Com --binarize repair, cuja fatoração de pares olha a
+// gramática inteira, só TERM e BIN são refeitas do zero sobre a saída de
+// USELESS. Na ordem POLYNOMIAL, em que DEL vem depois de BIN e das variáveis
+// criadas por ela, cada atualização é uma conversão completa, que usa o
+// pool das opções.
+//
+// Cada etapa espelha um método de GLCtoFNC. Uma mudança num deles tem de
+// ser repetida aqui, e IncrementalConverterTest compara as duas saídas:
+//
+//  - START: refreshSources e startName, como removeInitialRecursion;
+//  - DEL: o conjunto nullable calcula o mesmo que identifyNullableVariables,
+//    e refreshExpanded chama generateCombinations; limitExceeded monta a
+//    mensagem com lambdaLimitExceeded;
+//  - UNIT: closure segue a ordem de computeUnitPairs e refreshClosed copia
+//    as produções com copyUnitClosure, como removeChainRules;
+//  - USELESS: os conjuntos generating e reachable calculam os mesmos das
+//    duas buscas de removeUselessSymbols, e refreshKept filtra os corpos
+//    com generates;
+//  - TERM: render, como replaceTerminalsWithVariables, com os nomes de
+//    nameTerminalVariables;
+//  - BIN: chain e refreshOutput fazem a dobra à direita de
+//    foldLongProductions; com --binarize repair, convertToBinaryRules é
+//    chamado direto.
+//
+// As regras são escritas com appendRule e formatToken, e os nomes novos
+// seguem SymbolTable.FreshNames.
+public final class IncrementalConverter {
+
+    private static final int[] EMPTY = new int[0];
+    private static final int[][] NONE = new int[0][];
+    private static final Node[][] NO_CHAINS = new Node[0][];
+
+    private final GLCtoFNC.Options options;
+    private List<String> rules = List.of();
+    private List<String> result = List.of();
+    // null antes da primeira atualização e depois de uma falha: a próxima
+    // atualização monta tudo de novo
+    private State state;
+
+    public IncrementalConverter(List<String> rules, GLCtoFNC.Options options) {
+        this.options = options.copy();
+        update(rules);
+    }
+
+    public synchronized List<String> result() {
+        return result;
+    }
+
+    public synchronized List<String> rules() {
+        return rules;
+    }
+
+    // Remove as regras indicadas (uma ocorrência de cada linha) e acrescenta
+    // as novas no fim, como se o arquivo tivesse sido editado assim
+    public synchronized List<String> update(List<String> removedRules, List<String> addedRules) {
+        List<String> edited = new ArrayList<>(rules);
+        List<Line> sequence = state == null ? null : new ArrayList<>(state.lines);
+        for (String removed : removedRules) {
+            int index = edited.indexOf(removed.trim());
+            if (index >= 0) {
+                edited.remove(index);
+                if (sequence != null) {
+                    sequence.remove(index);
+                }
+            }
+        }
+        for (String added : addedRules) {
+            edited.add(added.trim());
+            if (sequence != null) {
+                sequence.add(new Line(added.trim()));
+            }
+        }
+        return apply(edited, sequence);
+    }
+
+    public synchronized List<String> update(List<String> newRules) {
+        List<String> lines = new ArrayList<>(newRules.size());
+        for (String rule : newRules) {
+            lines.add(rule.trim());
+        }
+        return apply(lines, state == null ? null : match(state.lines, lines));
+    }
+
+    private List<String> apply(List<String> lines, List<Line> sequence) {
+        List<String> converted;
+        try {
+            if (options.order == GLCtoFNC.Order.POLYNOMIAL) {
+                converted = format(GLCtoFNC.processGrammar(GLCtoFNC.parseGrammar(lines), options));
+            } else {
+                converted = ConversionStats.measure(options.stats, "UPDATE", () -> convert(lines, sequence),
+                        c -> state.sizes());
+                if (options.verifyLength >= 0) {
+                    Grammar original = GLCtoFNC.parseGrammar(lines);
+                    ConversionStats.measure(options.stats, "VERIFY", GLCtoFNC.parseGrammar(converted),
+                            g -> GLCtoFNC.verifyLanguage(original, g, options.verifyLength));
+                }
+            }
+        } catch (RuntimeException e) {
+            state = null;
+            throw e;
+        }
+        rules = Collections.unmodifiableList(lines);
+        result = converted;
+        return result;
+    }
+
+    private List<String> convert(List<String> lines, List<Line> sequence) {
+        if (state == null || !state.update(sequence)) {
+            List<Line> fresh = new ArrayList<>(lines.size());
+            boolean tokenized = false;
+            for (String line : lines) {
+                Line parsed = new Line(line);
+                tokenized |= parsed.tokenized;
+                fresh.add(parsed);
+            }
+            state = new State(options, tokenized);
+            state.update(fresh);
+        }
+        List<String> converted = state.render();
+        if (options.verbose) {
+            GLCtoFNC.standardError().println(state.summary());
+        }
+        return converted;
+    }
+
+    private static List<String> format(Grammar grammar) {
+        Grammar.Index byHead = grammar.indexByHead();
+        boolean compact = GLCtoFNC.isCompact(grammar);
+        List<String> lines = new ArrayList<>();
+        for (int variable : grammar.headsInOrder()) {
+            lines.add(GLCtoFNC.formatRule(grammar, byHead, variable, compact));
+        }
+        return Collections.unmodifiableList(lines);
+    }
+
+    // Casa as linhas novas com as antigas de mesmo texto, sem trocar a ordem
+    // entre elas: primeiro o início e o fim comuns, depois a maior sequência
+    // de linhas que aparecem uma única vez dos dois lados e, entre cada duas
+    // dessas, de novo o início e o fim comuns. As linhas antigas que sobram
+    // saem e as novas que sobram entram.
+    private static List<Line> match(List<Line> old, List<String> lines) {
+        Line[] matched = new Line[lines.size()];
+        matchRange(old, lines, 0, old.size(), 0, lines.size(), matched, true);
+        List<Line> sequence = new ArrayList<>(lines.size());
+        for (int i = 0; i < matched.length; i++) {
+            sequence.add(matched[i] != null ? matched[i] : new Line(lines.get(i)));
+        }
+        return sequence;
+    }
+
+    private static void matchRange(List<Line> old, List<String> lines, int oldFrom, int oldTo, int from, int to,
+            Line[] matched, boolean anchors) {
+        while (oldFrom < oldTo && from < to && old.get(oldFrom).text.equals(lines.get(from))) {
+            matched[from++] = old.get(oldFrom++);
+        }
+        while (oldFrom < oldTo && from < to && old.get(oldTo - 1).text.equals(lines.get(to - 1))) {
+            matched[--to] = old.get(--oldTo);
+        }
+        if (!anchors || oldFrom == oldTo || from == to) {
+            return;
+        }
+
+        // {vezes entre as antigas, posição antiga, vezes entre as novas}
+        Map<String, int[]> counts = new HashMap<>();
+        for (int i = oldFrom; i < oldTo; i++) {
+            int[] count = counts.computeIfAbsent(old.get(i).text, k -> new int[3]);
+            count[0]++;
+            count[1] = i;
+        }
+        for (int j = from; j < to; j++) {
+            int[] count = counts.get(lines.get(j));
+            if (count != null) {
+                count[2]++;
+            }
+        }
+        IntList unique = new IntList();
+        for (int j = from; j < to; j++) {
+            int[] count = counts.get(lines.get(j));
+            if (count != null && count[0] == 1 && count[2] == 1) {
+                unique.add(j);
+            }
+        }
+
+        // Maior subsequência crescente das posições antigas (paciência)
+        int[] tails = new int[unique.size];
+        int[] previous = new int[unique.size];
+        int length = 0;
+        for (int k = 0; k < unique.size; k++) {
+            int position = counts.get(lines.get(unique.get(k)))[1];
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (counts.get(lines.get(unique.get(tails[middle])))[1] < position) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[k] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = k;
+            length = Math.max(length, low + 1);
+        }
+        int[] anchorsFound = new int[length];
+        for (int k = length > 0 ? tails[length - 1] : -1, i = length - 1; k >= 0; k = previous[k], i--) {
+            anchorsFound[i] = unique.get(k);
+        }
+
+        int oldNext = oldFrom;
+        int next = from;
+        for (int j : anchorsFound) {
+            int position = counts.get(lines.get(j))[1];
+            matchRange(old, lines, oldNext, position, next, j, matched, false);
+            matched[j] = old.get(position);
+            oldNext = position + 1;
+            next = j + 1;
+        }
+        matchRange(old, lines, oldNext, oldTo, next, to, matched, false);
+    }
+
+    // Uma linha das regras, lida uma única vez na tabela do estado
+    private static final class Line {
+        final String text;
+        final boolean tokenized;
+        int head = -1;
+        int[][] bodies = NONE;
+        boolean parsed;
+        int position;
+        int seen;
+
+        Line(String text) {
+            this.text = text;
+            this.tokenized = GLCtoFNC.isTokenizedRule(text);
+        }
+
+        void parse(SymbolTable symbols) {
+            Grammar grammar = new Grammar(symbols, -1);
+            GLCtoFNC.parseLine(grammar, text);
+            if (grammar.size() > 0) {
+                head = grammar.head(0);
+                bodies = bodies(grammar);
+            }
+            parsed = true;
+        }
+    }
+
+    // O que cada etapa produziu para uma variável
+    private static final class Variable {
+        final int id;
+        // Linhas com esta cabeça, na ordem do arquivo
+        final List<Line> lines = new ArrayList<>();
+        // Produções das regras sem repetições (depois de START)
+        int[][] sources = NONE;
+        int[] sourceKeys = EMPTY;
+        // Sem regras lambda (DEL), e quantas produções cada uma de sources acrescentou
+        int[][] expanded = NONE;
+        int[] contributions = EMPTY;
+        int[] unitTargets = EMPTY;
+        // Sem regras unitárias (UNIT)
+        int[][] closed = NONE;
+        int[] closedKeys = EMPTY;
+        // Só as produções geradoras, e as variáveis que elas citam
+        int[][] kept = NONE;
+        int[] successors = EMPTY;
+        // kept se a variável é alcançável (USELESS), com os pares de cada corpo longo
+        int[][] output = NONE;
+        Node[][] chains = NO_CHAINS;
+        int version;
+
+        String text;
+        int textVersion = -1;
+        int textBlock;
+        int[] textNumbers = EMPTY;
+
+        Variable(int id) {
+            this.id = id;
+        }
+
+        void insert(Line line) {
+            int low = 0;
+            int high = lines.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (lines.get(middle).position < line.position) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            lines.add(low, line);
+        }
+    }
+
+    // Par (first, second) da dobra à direita. O segundo símbolo é outro par
+    // quando inner não é null. references conta os corpos da saída que usam
+    // o par, e number é o n de T<n> na última numeração.
+    private static final class Node {
+        final long key;
+        final int id;
+        final int first;
+        final int second;
+        final Node inner;
+        int references;
+        int stamp = -1;
+        int number;
+
+        String text;
+        int textVersion = -1;
+        int textNumber;
+        int textSecond;
+
+        Node(long key, int id, int first, int second, Node inner) {
+            this.key = key;
+            this.id = id;
+            this.first = first;
+            this.second = second;
+            this.inner = inner;
+        }
+    }
+
+    private static final class State {
+
+        final GLCtoFNC.Options options;
+        final boolean rightFold;
+        final SymbolTable symbols = new SymbolTable();
+        // O S' criado pela conversão. O nome interno não pode vir de uma
+        // regra; o nome escrito é escolhido a cada atualização.
+        final int synthetic;
+
+        List<Line> lines = new ArrayList<>();
+        boolean configured;
+        int initial = -1;
+        boolean shortcut;
+        int start = -1;
+
+        Variable[] variables = new Variable[16];
+        int created;
+        // Ocorrências de cada símbolo nas regras, nos corpos das regras, na
+        // saída e, para terminais, em corpos da saída com dois ou mais símbolos
+        int[] textUses = new int[16];
+        int[] bodyUses = new int[16];
+        int[] outputUses = new int[16];
+        int[] longUses = new int[16];
+        final BitSet longTerminals = new BitSet();
+        // Posição de cada símbolo na ordem em que aparece pela primeira vez e
+        // a linha em que isso acontece
+        int[] rank = new int[16];
+        Line[] firstLine = new Line[16];
+        int[] visited = new int[16];
+        int visit;
+        int[] lastPosition = new int[16];
+        int mark;
+
+        final Occurrences sourceOccurrences = new Occurrences();
+        final Occurrences unitPredecessors = new Occurrences();
+        final Occurrences closedOccurrences = new Occurrences();
+        final Occurrences predecessors = new Occurrences();
+        final DerivedSet nullable;
+        final DerivedSet generating;
+        final DerivedSet reachable;
+
+        final Map<Long, Node> pairs = new HashMap<>();
+        int nodes;
+        Node[] numbered = new Node[16];
+        int numbering;
+
+        int textVariables;
+        int sourceProductions;
+        int sourceSymbols;
+        long expandedSize;
+        int outputHeads;
+        int outputProductions;
+        int outputSymbols;
+        int nonCompactOutput;
+        // Muda quando aparece ou some das regras uma variável com nome que a
+        // conversão poderia criar (X, X' ou T<n>)
+        int presenceVersion;
+
+        String[] termNames = new String[16];
+        String[] tokens = new String[16];
+        String[] termRules = new String[16];
+        int[] termVersion = new int[16];
+        String renderSignature = "";
+        int renderVersion;
+        String namesKey = "";
+        Names namesAfterTerm;
+        final List<String> tNames = new ArrayList<>();
+        int firstTokenName;
+        int lastTerms;
+        int lastPairs;
+
+        // Variáveis, produções e símbolos da última saída de --binarize repair
+        int[] repairedSizes;
+
+        int editedLines;
+        int expandedCount;
+        int closedCount;
+        int outputCount;
+
+        final GLCtoFNC.Bodies expandedBodies = (variable, action) -> {
+            for (int[] body : variables[variable].expanded) {
+                action.accept(body);
+            }
+        };
+
+        State(GLCtoFNC.Options options, boolean tokenized) {
+            this.options = options;
+            rightFold = options.binarization == GLCtoFNC.Binarization.RIGHT_FOLD;
+            symbols.tokenized = tokenized;
+            synthetic = symbols.variable("\u0000" + GLCtoFNC.START_SYMBOL);
+            grow();
+            nullable = new DerivedSet() {
+                @Override
+                void rules(int variable, Consumer<int[]> action) {
+                    for (int[] body : variables[variable].sources) {
+                        action.accept(body);
+                    }
+                }
+
+                @Override
+                boolean accepted(int symbol) {
+                    return false;
+                }
+
+                @Override
+                void dependents(int symbol, IntConsumer action) {
+                    sourceOccurrences.forEach(symbol, action);
+                }
+            };
+            generating = new DerivedSet() {
+                @Override
+                void rules(int variable, Consumer<int[]> action) {
+                    for (int[] body : variables[variable].closed) {
+                        action.accept(body);
+                    }
+                }
+
+                @Override
+                boolean accepted(int symbol) {
+                    return !symbols.isVariable(symbol);
+                }
+
+                @Override
+                void dependents(int symbol, IntConsumer action) {
+                    closedOccurrences.forEach(symbol, action);
+                }
+            };
+            // v é alcançável se é o símbolo inicial gerador ou se aparece numa
+            // produção geradora de uma variável alcançável
+            reachable = new DerivedSet() {
+                private final int[] predecessor = new int[1];
+
+                @Override
+                void rules(int variable, Consumer<int[]> action) {
+                    if (variable == start && generating.members.get(start)) {
+                        action.accept(EMPTY);
+                    }
+                    predecessors.forEach(variable, p -> {
+                        predecessor[0] = p;
+                        action.accept(predecessor);
+                    });
+                }
+
+                @Override
+                boolean accepted(int symbol) {
+                    return false;
+                }
+
+                @Override
+                void dependents(int symbol, IntConsumer action) {
+                    for (int successor : variables[symbol].successors) {
+                        action.accept(successor);
+                    }
+                }
+            };
+        }
+
+        // Aplica a nova sequência de linhas, que reaproveita os objetos das
+        // linhas mantidas. Retorna false, com o estado inutilizado, quando a
+        // edição muda a sintaxe ou o símbolo inicial.
+        boolean update(List<Line> sequence) {
+            mark++;
+            int tokenized = 0;
+            for (Line line : sequence) {
+                tokenized += line.tokenized ? 1 : 0;
+                line.seen = mark;
+            }
+            if ((tokenized > 0) != symbols.tokenized) {
+                return false;
+            }
+
+            BitSet dirty = new BitSet();
+            editedLines = 0;
+            for (Line line : lines) {
+                if (line.seen != mark) {
+                    unregister(line, dirty);
+                    editedLines++;
+                }
+            }
+            lines = new ArrayList<>(sequence);
+            for (int i = 0; i < lines.size(); i++) {
+                lines.get(i).position = i;
+            }
+            for (Line line : lines) {
+                if (!line.parsed) {
+                    line.parse(symbols);
+                    grow();
+                    register(line, dirty);
+                    editedLines++;
+                }
+            }
+
+            // O mesmo símbolo inicial de parseGrammar e removeInitialRecursion
+            int first = -1;
+            for (Line line : lines) {
+                if (line.head >= 0) {
+                    first = line.head;
+                    break;
+                }
+            }
+            int converted = symbols.lookup(GLCtoFNC.START_SYMBOL, true);
+            boolean newShortcut = converted >= 0 && !variables[converted].lines.isEmpty() && bodyUses[converted] == 0;
+            int named = symbols.lookup(GLCtoFNC.INITIAL_VARIABLE, true);
+            int newInitial = newShortcut ? converted : named >= 0 && !variables[named].lines.isEmpty() ? named : first;
+            if (!configured) {
+                configured = true;
+                initial = newInitial;
+                shortcut = newShortcut;
+                start = shortcut ? initial : synthetic;
+                dirty.set(synthetic);
+            } else if (newInitial != initial || newShortcut != shortcut) {
+                return false;
+            }
+            expandedCount = 0;
+            closedCount = 0;
+            outputCount = 0;
+            if (initial < 0) {
+                return true;
+            }
+
+            IntList changedSources = new IntList();
+            for (int h = dirty.nextSetBit(0); h >= 0; h = dirty.nextSetBit(h + 1)) {
+                if (refreshSources(h)) {
+                    changedSources.add(h);
+                }
+            }
+            IntList moved = rankSymbols();
+
+            // DEL: regras novas ou com um símbolo que mudou de anulabilidade
+            IntList nullableChanged = nullable.update(changedSources);
+            BitSet pending = new BitSet();
+            addAll(pending, changedSources);
+            for (int i = 0; i < nullableChanged.size; i++) {
+                sourceOccurrences.forEach(nullableChanged.get(i), pending::set);
+                if (nullableChanged.get(i) == start) {
+                    pending.set(start);
+                }
+            }
+            // Uma variável que passa do limite sozinha para no meio; as demais
+            // ainda são refeitas, para a mensagem sair das contagens de agora.
+            // Como em removeLambdaRules, o S' -> . do fim não conta.
+            IntList changedExpanded = new IntList();
+            boolean exceeded = false;
+            for (int h = pending.nextSetBit(0); h >= 0; h = pending.nextSetBit(h + 1)) {
+                try {
+                    if (refreshExpanded(h)) {
+                        changedExpanded.add(h);
+                    }
+                } catch (ConversionLimitException e) {
+                    exceeded = true;
+                }
+            }
+            expandedCount = pending.cardinality();
+            if (exceeded || expandedSize - (nullable.members.get(start) ? 1 : 0) > options.maxProductions) {
+                throw limitExceeded();
+            }
+
+            // UNIT: quem alcança uma variável que mudou, e quem tem no fecho
+            // uma variável que mudou de posição
+            pending.clear();
+            ancestors(changedExpanded, true, pending);
+            ancestors(moved, false, pending);
+            IntList changedClosed = new IntList();
+            for (int h = pending.nextSetBit(0); h >= 0; h = pending.nextSetBit(h + 1)) {
+                if (refreshClosed(h)) {
+                    changedClosed.add(h);
+                }
+            }
+            closedCount = pending.cardinality();
+
+            // USELESS
+            IntList generatingChanged = generating.update(changedClosed);
+            pending.clear();
+            addAll(pending, changedClosed);
+            IntList seeds = new IntList();
+            for (int i = 0; i < generatingChanged.size; i++) {
+                closedOccurrences.forEach(generatingChanged.get(i), pending::set);
+                if (generatingChanged.get(i) == start) {
+                    seeds.add(start);
+                }
+            }
+            IntList changedKept = new IntList();
+            for (int h = pending.nextSetBit(0); h >= 0; h = pending.nextSetBit(h + 1)) {
+                if (refreshKept(h, seeds)) {
+                    changedKept.add(h);
+                }
+            }
+            IntList reachableChanged = reachable.update(seeds);
+            pending.clear();
+            addAll(pending, changedKept);
+            addAll(pending, reachableChanged);
+            for (int h = pending.nextSetBit(0); h >= 0; h = pending.nextSetBit(h + 1)) {
+                if (refreshOutput(h)) {
+                    outputCount++;
+                }
+            }
+            return true;
+        }
+
+        private void register(Line line, BitSet dirty) {
+            if (line.head >= 0) {
+                variables[line.head].insert(line);
+                dirty.set(line.head);
+                count(line, 1);
+            }
+        }
+
+        private void unregister(Line line, BitSet dirty) {
+            if (line.head >= 0) {
+                variables[line.head].lines.remove(line);
+                dirty.set(line.head);
+                count(line, -1);
+            }
+        }
+
+        private void count(Line line, int delta) {
+            textUse(line.head, delta);
+            for (int[] body : line.bodies) {
+                for (int symbol : body) {
+                    textUse(symbol, delta);
+                    bodyUses[symbol] += delta;
+                }
+            }
+        }
+
+        private void textUse(int symbol, int delta) {
+            int before = textUses[symbol];
+            textUses[symbol] += delta;
+            if ((before == 0) != (textUses[symbol] == 0) && symbols.isVariable(symbol)) {
+                textVariables += delta;
+                String name = symbols.name(symbol);
+                if (GLCtoFNC.isCompactName(name, true) || (name.length() > 1 && name.charAt(0) == 'T'
+                        && name.chars().skip(1).allMatch(Character::isDigit))) {
+                    presenceVersion++;
+                }
+            }
+        }
+
+        private boolean refreshSources(int variable) {
+            Variable v = variables[variable];
+            int[][] sources;
+            if (variable == synthetic) {
+                sources = shortcut ? NONE : new int[][] {{initial}};
+            } else {
+                Grammar grammar = new Grammar(symbols, -1);
+                for (Line line : v.lines) {
+                    for (int[] body : line.bodies) {
+                        // START descarta S -> S
+                        if (shortcut || variable != initial || body.length != 1 || body[0] != initial) {
+                            grammar.add(variable, body);
+                        }
+                    }
+                }
+                sources = bodies(grammar);
+            }
+            if (Arrays.deepEquals(sources, v.sources)) {
+                return false;
+            }
+            if (variable != synthetic) {
+                sourceProductions += sources.length - v.sources.length;
+                sourceSymbols += totalLength(sources) - totalLength(v.sources);
+            }
+            int[] keys = variablesOf(sources);
+            sourceOccurrences.replace(variable, v.sourceKeys, keys);
+            v.sourceKeys = keys;
+            v.sources = sources;
+            return true;
+        }
+
+        private boolean refreshExpanded(int variable) {
+            Variable v = variables[variable];
+            Grammar grammar = new Grammar(symbols, -1);
+            v.contributions = new int[v.sources.length];
+            for (int k = 0; k < v.sources.length; k++) {
+                int before = grammar.size();
+                try {
+                    if (v.sources[k].length > 0) {
+                        GLCtoFNC.generateCombinations(grammar, variable, v.sources[k], nullable.members, lastPosition,
+                                options.maxProductions);
+                    }
+                } finally {
+                    v.contributions[k] = grammar.size() - before;
+                }
+            }
+            if (variable == start && nullable.members.get(start)) {
+                grammar.add(start);
+            }
+            int[][] expanded = bodies(grammar);
+            if (Arrays.deepEquals(expanded, v.expanded)) {
+                return false;
+            }
+            expandedSize += expanded.length - v.expanded.length;
+            int[] units = unitTargets(expanded);
+            unitPredecessors.replace(variable, v.unitTargets, units);
+            v.unitTargets = units;
+            v.expanded = expanded;
+            return true;
+        }
+
+        // A mensagem cita a produção em que a conversão completa passa do
+        // limite: a primeira, na ordem de removeInitialRecursion, em que a
+        // soma das contribuições passa de maxProductions. As linhas dão essa
+        // ordem; o corpo repetido ou o S -> S descartado não é o próximo de
+        // sources e não contribui. Uma variável que parou no meio já passa do
+        // limite sozinha, então a soma nunca vai além do ponto em que ela parou.
+        private ConversionLimitException limitExceeded() {
+            int[] next = new int[symbols.size()];
+            long total = 0;
+            for (Line line : lines) {
+                if (line.head < 0) {
+                    continue;
+                }
+                for (int[] body : line.bodies) {
+                    if (line.head == initial && !shortcut && next[synthetic] == 0) {
+                        total += contribution(synthetic, next);
+                        if (total > options.maxProductions) {
+                            return GLCtoFNC.lambdaLimitExceeded(symbols, startName(new Names()), new int[] {initial},
+                                    nullable.members, options.maxProductions);
+                        }
+                    }
+                    Variable v = variables[line.head];
+                    if (next[line.head] < v.sources.length && Arrays.equals(body, v.sources[next[line.head]])) {
+                        total += contribution(line.head, next);
+                        if (total > options.maxProductions) {
+                            return GLCtoFNC.lambdaLimitExceeded(symbols, symbols.name(line.head), body, nullable.members,
+                                    options.maxProductions);
+                        }
+                    }
+                }
+            }
+            return new ConversionLimitException("a remoção de regras lambda ultrapassou o limite de "
+                    + options.maxProductions + " produções. Use --max-productions para alterar o limite.");
+        }
+
+        private int contribution(int variable, int[] next) {
+            int[] contributions = variables[variable].contributions;
+            int k = next[variable]++;
+            return k < contributions.length ? contributions[k] : 0;
+        }
+
+        private boolean refreshClosed(int variable) {
+            Variable v = variables[variable];
+            int[][] closed = NONE;
+            if (v.expanded.length > 0) {
+                Grammar grammar = new Grammar(symbols, -1);
+                GLCtoFNC.copyUnitClosure(grammar, variable, closure(variable), expandedBodies);
+                closed = bodies(grammar);
+            }
+            if (Arrays.deepEquals(closed, v.closed)) {
+                return false;
+            }
+            int[] keys = variablesOf(closed);
+            closedOccurrences.replace(variable, v.closedKeys, keys);
+            v.closedKeys = keys;
+            v.closed = closed;
+            return true;
+        }
+
+        // Variáveis alcançáveis por produções unitárias, sem a própria, na
+        // ordem dos ids de uma leitura completa, que é a de removeChainRules
+        private int[] closure(int variable) {
+            if (variables[variable].unitTargets.length == 0) {
+                return EMPTY;
+            }
+            visit++;
+            visited[variable] = visit;
+            IntList stack = new IntList();
+            IntList found = new IntList();
+            stack.add(variable);
+            while (stack.size > 0) {
+                for (int target : variables[stack.pop()].unitTargets) {
+                    if (visited[target] != visit) {
+                        visited[target] = visit;
+                        found.add(target);
+                        stack.add(target);
+                    }
+                }
+            }
+            long[] ordered = new long[found.size];
+            for (int i = 0; i < found.size; i++) {
+                ordered[i] = (long) rank[found.get(i)] << 32 | found.get(i);
+            }
+            Arrays.sort(ordered);
+            int[] targets = new int[ordered.length];
+            for (int i = 0; i < ordered.length; i++) {
+                targets[i] = (int) ordered[i];
+            }
+            return targets;
+        }
+
+        private boolean refreshKept(int variable, IntList seeds) {
+            Variable v = variables[variable];
+            int[][] kept = v.closed;
+            int count = 0;
+            for (int[] body : v.closed) {
+                count += GLCtoFNC.generates(symbols, body, generating.members) ? 1 : 0;
+            }
+            if (count < kept.length) {
+                kept = new int[count][];
+                count = 0;
+                for (int[] body : v.closed) {
+                    if (GLCtoFNC.generates(symbols, body, generating.members)) {
+                        kept[count++] = body;
+                    }
+                }
+            }
+            if (Arrays.deepEquals(kept, v.kept)) {
+                return false;
+            }
+            int[] successors = variablesOf(kept);
+            difference(v.successors, successors, seeds);
+            predecessors.replace(variable, v.successors, successors);
+            v.successors = successors;
+            v.kept = kept;
+            return true;
+        }
+
+        private boolean refreshOutput(int variable) {
+            Variable v = variables[variable];
+            int[][] output = reachable.members.get(variable) ? v.kept : NONE;
+            if (output == v.output) {
+                return false;
+            }
+            countOutput(variable, v.output, -1);
+            countOutput(variable, output, 1);
+            Node[][] chains = output.length == 0 ? NO_CHAINS : new Node[output.length][];
+            for (int k = 0; k < output.length; k++) {
+                if (output[k].length > 2 && rightFold) {
+                    chains[k] = chain(output[k]);
+                }
+            }
+            for (Node[] chain : v.chains) {
+                if (chain != null) {
+                    for (Node node : chain) {
+                        if (--node.references == 0) {
+                            pairs.remove(node.key);
+                        }
+                    }
+                }
+            }
+            v.output = output;
+            v.chains = chains;
+            v.version++;
+            return true;
+        }
+
+        private void countOutput(int variable, int[][] output, int delta) {
+            if (output.length == 0) {
+                return;
+            }
+            outputHeads += delta;
+            outputProductions += delta * output.length;
+            outputUse(variable, delta * output.length);
+            for (int[] body : output) {
+                outputSymbols += delta * Math.min(body.length, 2);
+                for (int symbol : body) {
+                    outputUse(symbol, delta);
+                    if (body.length > 1 && !symbols.isVariable(symbol)) {
+                        longUses[symbol] += delta;
+                        longTerminals.set(symbol, longUses[symbol] > 0);
+                    }
+                }
+            }
+        }
+
+        private void outputUse(int symbol, int delta) {
+            int before = outputUses[symbol];
+            outputUses[symbol] += delta;
+            if ((before == 0) != (outputUses[symbol] == 0) && symbol != synthetic
+                    && !GLCtoFNC.isCompactName(symbols, symbol)) {
+                nonCompactOutput += before == 0 ? 1 : -1;
+            }
+        }
+
+        // Pares da dobra à direita do corpo, do mais interno ao mais externo
+        private Node[] chain(int[] body) {
+            Node[] chain = new Node[body.length - 2];
+            Node inner = null;
+            int last = body[body.length - 1];
+            for (int j = body.length - 2; j > 0; j--) {
+                long key = ((long) body[j] << 32) | ((inner == null ? last : ~inner.id) & 0xFFFFFFFFL);
+                Node node = pairs.get(key);
+                if (node == null) {
+                    node = new Node(key, nodes++, body[j], last, inner);
+                    pairs.put(key, node);
+                }
+                node.references++;
+                chain[body.length - 2 - j] = node;
+                inner = node;
+            }
+            return chain;
+        }
+
+        // Recalcula a posição de cada símbolo e devolve as variáveis cuja
+        // primeira aparição passou para outra linha: só entre elas a ordem
+        // relativa pode ter mudado
+        private IntList rankSymbols() {
+            IntList moved = new IntList();
+            visit++;
+            int next = 0;
+            for (Line line : lines) {
+                if (line.head < 0) {
+                    continue;
+                }
+                next = rank(line.head, line, next, moved);
+                for (int[] body : line.bodies) {
+                    for (int symbol : body) {
+                        next = rank(symbol, line, next, moved);
+                    }
+                }
+            }
+            return moved;
+        }
+
+        private int rank(int symbol, Line line, int next, IntList moved) {
+            if (visited[symbol] == visit) {
+                return next;
+            }
+            visited[symbol] = visit;
+            rank[symbol] = next;
+            if (firstLine[symbol] != line) {
+                firstLine[symbol] = line;
+                if (symbols.isVariable(symbol)) {
+                    moved.add(symbol);
+                }
+            }
+            return next + 1;
+        }
+
+        // Marca em into as variáveis que alcançam as sementes por produções
+        // unitárias (e as próprias sementes, se self)
+        private void ancestors(IntList seeds, boolean self, BitSet into) {
+            IntList stack = new IntList();
+            for (int i = 0; i < seeds.size; i++) {
+                if (self) {
+                    into.set(seeds.get(i));
+                }
+                stack.add(seeds.get(i));
+            }
+            while (stack.size > 0) {
+                unitPredecessors.forEach(stack.pop(), p -> {
+                    if (!into.get(p)) {
+                        into.set(p);
+                        stack.add(p);
+                    }
+                });
+            }
+        }
+
+        private int[] variablesOf(int[][] bodies) {
+            visit++;
+            IntList found = new IntList();
+            for (int[] body : bodies) {
+                for (int symbol : body) {
+                    if (symbols.isVariable(symbol) && visited[symbol] != visit) {
+                        visited[symbol] = visit;
+                        found.add(symbol);
+                    }
+                }
+            }
+            int[] keys = found.toArray();
+            Arrays.sort(keys);
+            return keys;
+        }
+
+        private int[] unitTargets(int[][] bodies) {
+            visit++;
+            IntList found = new IntList();
+            for (int[] body : bodies) {
+                if (body.length == 1 && symbols.isVariable(body[0]) && visited[body[0]] != visit) {
+                    visited[body[0]] = visit;
+                    found.add(body[0]);
+                }
+            }
+            int[] targets = found.toArray();
+            Arrays.sort(targets);
+            return targets;
+        }
+
+        private void grow() {
+            int size = symbols.size();
+            if (size > textUses.length) {
+                int capacity = Math.max(size, textUses.length * 2);
+                variables = Arrays.copyOf(variables, capacity);
+                textUses = Arrays.copyOf(textUses, capacity);
+                bodyUses = Arrays.copyOf(bodyUses, capacity);
+                outputUses = Arrays.copyOf(outputUses, capacity);
+                longUses = Arrays.copyOf(longUses, capacity);
+                rank = Arrays.copyOf(rank, capacity);
+                firstLine = Arrays.copyOf(firstLine, capacity);
+                visited = Arrays.copyOf(visited, capacity);
+                termNames = Arrays.copyOf(termNames, capacity);
+                tokens = Arrays.copyOf(tokens, capacity);
+                termRules = Arrays.copyOf(termRules, capacity);
+                termVersion = Arrays.copyOf(termVersion, capacity);
+                int filled = lastPosition.length;
+                lastPosition = Arrays.copyOf(lastPosition, capacity);
+                Arrays.fill(lastPosition, filled, capacity, -1);
+            }
+            if (created == 0) {
+                Arrays.fill(lastPosition, -1);
+            }
+            for (; created < size; created++) {
+                if (symbols.isVariable(created)) {
+                    variables[created] = new Variable(created);
+                }
+            }
+        }
+
+        // Monta a saída na ordem de uma conversão completa: as variáveis na
+        // ordem em que aparecem sem lambda, as dos terminais em ordem de nome e
+        // os T<n> em ordem de criação
+        List<String> render() {
+            if (initial < 0) {
+                lastTerms = 0;
+                lastPairs = 0;
+                return List.of();
+            }
+            if (!rightFold) {
+                return renderRepaired();
+            }
+            Names names = new Names();
+            String startName = startName(names);
+
+            // TERM, como em replaceTerminalsWithVariables
+            List<Integer> terminals = new ArrayList<>();
+            for (int t = longTerminals.nextSetBit(0); t >= 0; t = longTerminals.nextSetBit(t + 1)) {
+                terminals.add(t);
+            }
+            terminals.sort(Comparator.comparing(symbols::name));
+            List<String> terminalNames = new ArrayList<>(terminals.size());
+            for (int terminal : terminals) {
+                terminalNames.add(symbols.name(terminal));
+            }
+            String[] chosen = GLCtoFNC.nameTerminalVariables(terminalNames, name -> used(name, startName), names::create,
+                    names::fresh);
+            boolean compact = !symbols.tokenized && nonCompactOutput == 0 && GLCtoFNC.isCompactName(startName, true);
+            for (int i = 0; i < chosen.length; i++) {
+                termNames[terminals.get(i)] = chosen[i];
+                compact &= GLCtoFNC.isCompactName(chosen[i], true);
+            }
+            // Os T<n> seguem do estado dos nomes depois de TERM
+            String key = names.key() + "/" + presenceVersion;
+            if (!key.equals(namesKey)) {
+                namesKey = key;
+                namesAfterTerm = names;
+                tNames.clear();
+                firstTokenName = Integer.MAX_VALUE;
+            }
+
+            int[] order = headsInOrder();
+            numbering++;
+            int count = 0;
+            for (int variable : order) {
+                for (Node[] chain : variables[variable].chains) {
+                    if (chain == null) {
+                        continue;
+                    }
+                    for (Node node : chain) {
+                        if (node.stamp != numbering) {
+                            node.stamp = numbering;
+                            node.number = ++count;
+                            if (count == numbered.length) {
+                                numbered = Arrays.copyOf(numbered, count * 2);
+                            }
+                            numbered[count] = node;
+                        }
+                    }
+                }
+            }
+            while (tNames.size() < count) {
+                String name = namesAfterTerm.fresh("T");
+                if (firstTokenName == Integer.MAX_VALUE && !GLCtoFNC.isCompactName(name, true)) {
+                    firstTokenName = tNames.size();
+                }
+                tNames.add(name);
+            }
+            compact &= count <= firstTokenName;
+            String signature = startName + '\u0000' + compact + '\u0000' + terminals + Arrays.toString(chosen)
+                    + '\u0000' + namesKey;
+            if (!signature.equals(renderSignature)) {
+                renderSignature = signature;
+                renderVersion++;
+            }
+
+            List<String> output = new ArrayList<>(order.length + chosen.length + count);
+            for (int variable : order) {
+                Variable v = variables[variable];
+                if (v.output.length == 0) {
+                    continue;
+                }
+                if (v.textVersion != renderVersion || v.textBlock != v.version || !sameNumbers(v)) {
+                    v.text = headRule(v, startName, compact);
+                    v.textVersion = renderVersion;
+                    v.textBlock = v.version;
+                    v.textNumbers = topNumbers(v);
+                }
+                output.add(v.text);
+            }
+            for (int i = 0; i < chosen.length; i++) {
+                int terminal = terminals.get(i);
+                if (termVersion[terminal] != renderVersion) {
+                    termRules[terminal] = chosen[i] + " -> "
+                            + (compact ? symbols.name(terminal) : token(terminal));
+                    termVersion[terminal] = renderVersion;
+                }
+                output.add(termRules[terminal]);
+            }
+            String separator = compact ? "" : " ";
+            for (int n = 1; n <= count; n++) {
+                Node node = numbered[n];
+                int second = node.inner == null ? -1 : node.inner.number;
+                if (node.textVersion != renderVersion || node.textNumber != n || node.textSecond != second) {
+                    node.text = tNames.get(n - 1) + " -> " + symbolName(node.first) + separator
+                            + (node.inner == null ? symbolName(node.second) : tNames.get(second - 1));
+                    node.textVersion = renderVersion;
+                    node.textNumber = n;
+                    node.textSecond = second;
+                }
+                output.add(node.text);
+            }
+            lastTerms = chosen.length;
+            lastPairs = count;
+            return Collections.unmodifiableList(output);
+        }
+
+        // As variáveis na ordem da primeira produção sem lambda: S' -> S entra
+        // na posição da primeira produção de S, e S' -> . vai para o fim
+        private int[] headsInOrder() {
+            IntList order = new IntList();
+            visit++;
+            for (Line line : lines) {
+                int variable = line.head;
+                if (variable < 0) {
+                    continue;
+                }
+                if (variable == initial && !shortcut && visited[synthetic] != visit) {
+                    visited[synthetic] = visit;
+                    order.add(synthetic);
+                }
+                if (visited[variable] != visit && opens(line)) {
+                    visited[variable] = visit;
+                    order.add(variable);
+                }
+            }
+            if (visited[start] != visit) {
+                order.add(start);
+            }
+            return order.toArray();
+        }
+
+        // Com --binarize repair: a saída de USELESS é montada numa tabela com os
+        // ids de uma leitura completa (os símbolos das regras na ordem em que
+        // aparecem e depois o S'), para que TERM e a fatoração de pares, que
+        // desempata pelos ids, saiam iguais às da conversão completa
+        private List<String> renderRepaired() {
+            lastTerms = 0;
+            lastPairs = 0;
+            if (initial < 0) {
+                repairedSizes = null;
+                return List.of();
+            }
+            IntList present = new IntList();
+            for (int symbol = 0; symbol < symbols.size(); symbol++) {
+                if (textUses[symbol] > 0) {
+                    present.add(symbol);
+                }
+            }
+            long[] ordered = new long[present.size];
+            for (int i = 0; i < present.size; i++) {
+                ordered[i] = (long) rank[present.get(i)] << 32 | present.get(i);
+            }
+            Arrays.sort(ordered);
+            SymbolTable table = new SymbolTable();
+            table.tokenized = symbols.tokenized;
+            int[] ids = new int[symbols.size()];
+            for (long entry : ordered) {
+                int symbol = (int) entry;
+                ids[symbol] = table.intern(symbols.name(symbol), symbols.isVariable(symbol));
+            }
+            ids[synthetic] = shortcut ? ids[initial]
+                    : table.lookup(GLCtoFNC.START_SYMBOL, true) < 0 ? table.variable(GLCtoFNC.START_SYMBOL)
+                    : table.freshVariable(GLCtoFNC.START_SYMBOL);
+
+            Grammar grammar = new Grammar(table, ids[start]);
+            for (int variable : headsInOrder()) {
+                for (int[] body : variables[variable].output) {
+                    int[] mapped = new int[body.length];
+                    for (int i = 0; i < body.length; i++) {
+                        mapped[i] = ids[body[i]];
+                    }
+                    grammar.add(ids[variable], mapped);
+                }
+            }
+            Grammar cnf = GLCtoFNC.convertToBinaryRules(GLCtoFNC.replaceTerminalsWithVariables(grammar), options);
+            repairedSizes = new int[] {GLCtoFNC.countVariables(cnf), cnf.size(), cnf.totalLength()};
+            return format(cnf);
+        }
+
+        private boolean opens(Line line) {
+            for (int[] body : line.bodies) {
+                if (body.length > 0 && (shortcut || line.head != initial || body.length != 1 || body[0] != initial)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Se a variável de nome name aparece na saída de USELESS
+        private boolean used(String name, String startName) {
+            int id = symbols.lookup(name, true);
+            return id >= 0 && textUses[id] > 0 && outputUses[id] > 0 || name.equals(startName) && outputUses[start] > 0;
+        }
+
+        // O nome que removeInitialRecursion daria ao S' criado
+        private String startName(Names names) {
+            return shortcut ? GLCtoFNC.START_SYMBOL
+                    : names.taken(GLCtoFNC.START_SYMBOL) ? names.fresh(GLCtoFNC.START_SYMBOL)
+                    : names.create(GLCtoFNC.START_SYMBOL);
+        }
+
+        // O texto de um símbolo na sintaxe de tokens não muda com a edição
+        private String token(int symbol) {
+            if (tokens[symbol] == null) {
+                tokens[symbol] = GLCtoFNC.formatToken(symbols, symbol);
+            }
+            return tokens[symbol];
+        }
+
+        private String symbolName(int symbol) {
+            return symbols.isVariable(symbol) ? symbols.name(symbol) : termNames[symbol];
+        }
+
+        // Um corpo longo é escrito como o primeiro símbolo e o T<n> do par mais externo
+        private String headRule(Variable v, String startName, boolean compact) {
+            return GLCtoFNC.appendRule(new StringBuilder(), v.id == synthetic ? startName : symbols.name(v.id),
+                    v.output.length, k -> v.output[k].length == 0, (rule, k) -> {
+                        int[] body = v.output[k];
+                        if (body.length == 1) {
+                            rule.append(compact ? symbols.name(body[0]) : token(body[0]));
+                            return;
+                        }
+                        Node[] chain = v.chains[k];
+                        rule.append(symbolName(body[0])).append(compact ? "" : " ")
+                                .append(chain == null ? symbolName(body[1]) : tNames.get(chain[chain.length - 1].number - 1));
+                    }).toString();
+        }
+
+        private int[] topNumbers(Variable v) {
+            IntList numbers = new IntList();
+            for (Node[] chain : v.chains) {
+                if (chain != null) {
+                    numbers.add(chain[chain.length - 1].number);
+                }
+            }
+            return numbers.toArray();
+        }
+
+        private boolean sameNumbers(Variable v) {
+            int i = 0;
+            for (Node[] chain : v.chains) {
+                if (chain != null && (i >= v.textNumbers.length || v.textNumbers[i++] != chain[chain.length - 1].number)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int[] sizes() {
+            if (!rightFold && repairedSizes != null) {
+                return new int[] {textVariables, sourceProductions, sourceSymbols, repairedSizes[0], repairedSizes[1],
+                        repairedSizes[2]};
+            }
+            return new int[] {textVariables, sourceProductions, sourceSymbols, outputHeads + lastTerms + lastPairs,
+                    outputProductions + lastTerms + lastPairs, outputSymbols + lastTerms + 2 * lastPairs};
+        }
+
+        String summary() {
+            return "Reconversão incremental: " + editedLines + " linhas alteradas, " + expandedCount
+                    + " variáveis refeitas sem lambda, " + closedCount + " sem unitárias, " + outputCount
+                    + " com saída nova";
+        }
+
+        // Os nomes de SymbolTable.freshVariable sobre a tabela de uma leitura
+        // completa, que tem as variáveis das regras e os nomes já criados
+        private final class Names {
+            final Set<String> created = new HashSet<>();
+            final SymbolTable.FreshNames fresh = new SymbolTable.FreshNames(this::taken);
+
+            boolean taken(String name) {
+                int id = symbols.lookup(name, true);
+                return id >= 0 && textUses[id] > 0 || created.contains(name);
+            }
+
+            String create(String name) {
+                created.add(name);
+                return name;
+            }
+
+            String fresh(String base) {
+                return create(fresh.next(base, !symbols.tokenized));
+            }
+
+            String key() {
+                return fresh.key() + "," + new TreeSet<>(created);
+            }
+        }
+    }
+
+    private static int[][] bodies(Grammar grammar) {
+        int[][] bodies = new int[grammar.size()][];
+        for (int p = 0; p < grammar.size(); p++) {
+            bodies[p] = grammar.body(p);
+        }
+        return bodies;
+    }
+
+    private static int totalLength(int[][] bodies) {
+        int length = 0;
+        for (int[] body : bodies) {
+            length += body.length;
+        }
+        return length;
+    }
+
+    private static void addAll(BitSet set, IntList values) {
+        for (int i = 0; i < values.size; i++) {
+            set.set(values.get(i));
+        }
+    }
+
+    // Acrescenta a out o que está em só um dos dois arrays ordenados
+    private static void difference(int[] before, int[] after, IntList out) {
+        int i = 0;
+        int j = 0;
+        while (i < before.length || j < after.length) {
+            if (j == after.length || (i < before.length && before[i] < after[j])) {
+                out.add(before[i++]);
+            } else if (i == before.length || after[j] < before[i]) {
+                out.add(after[j++]);
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+
+    // Menor conjunto de variáveis fechado por regras do tipo "v pertence se
+    // algum corpo de v só tem símbolos aceitos ou do conjunto". Cada membro
+    // guarda a profundidade da derivação que o pôs no conjunto. Quando as
+    // regras de algumas variáveis mudam, o conjunto é corrigido em duas fases:
+    // saem as que não têm mais uma regra só com símbolos de profundidade menor
+    // e, em cascata, as que dependiam delas; depois voltam as que ainda podem
+    // ser derivadas, com um contador de símbolos pendentes por regra como em
+    // identifyNullableVariables. A profundidade impede que um ciclo sustente
+    // a si mesmo e poupa, na primeira fase, quem tem outra derivação.
+    private abstract static class DerivedSet {
+        final BitSet members = new BitSet();
+        private int[] depth = new int[16];
+        private final BitSet region = new BitSet();
+        private final BitSet dropped = new BitSet();
+        private final IntList stack = new IntList();
+        private final IntList removed = new IntList();
+        private final IntList ready = new IntList();
+        private final IntList touched = new IntList();
+        private int[] ruleHead = new int[64];
+        private int[] ruleDepth = new int[64];
+        private int[] pending = new int[64];
+        private int rules;
+        // Regras à espera de cada símbolo, em listas encadeadas
+        private int[] firstEntry = new int[0];
+        private int[] entryRule = new int[64];
+        private int[] entryNext = new int[64];
+        private int entries;
+        private boolean supported;
+
+        abstract void rules(int variable, Consumer<int[]> action);
+
+        // Símbolo que não precisa pertencer ao conjunto
+        abstract boolean accepted(int symbol);
+
+        // Variáveis com alguma regra que cita o símbolo
+        abstract void dependents(int symbol, IntConsumer action);
+
+        // Corrige o conjunto depois que as regras das variáveis dadas mudaram
+        // e devolve as que entraram ou saíram
+        IntList update(IntList changed) {
+            removed.clear();
+            for (int i = 0; i < changed.size; i++) {
+                if (members.get(changed.get(i))) {
+                    stack.add(changed.get(i));
+                }
+            }
+            while (stack.size > 0) {
+                int variable = stack.pop();
+                if (members.get(variable) && !supported(variable)) {
+                    members.clear(variable);
+                    dropped.set(variable);
+                    removed.add(variable);
+                    dependents(variable, d -> {
+                        if (members.get(d)) {
+                            stack.add(d);
+                        }
+                    });
+                }
+            }
+
+            rules = 0;
+            entries = 0;
+            for (int i = 0; i < removed.size; i++) {
+                examine(removed.get(i));
+            }
+            for (int i = 0; i < changed.size; i++) {
+                if (!members.get(changed.get(i)) && !region.get(changed.get(i))) {
+                    examine(changed.get(i));
+                }
+            }
+            IntList flipped = new IntList();
+            while (ready.size > 0) {
+                int rule = ready.pop();
+                int variable = ruleHead[rule];
+                if (members.get(variable)) {
+                    continue;
+                }
+                members.set(variable);
+                if (variable >= depth.length) {
+                    depth = Arrays.copyOf(depth, Math.max(variable + 1, depth.length * 2));
+                }
+                depth[variable] = ruleDepth[rule] + 1;
+                if (!dropped.get(variable)) {
+                    flipped.add(variable);
+                }
+                if (variable < firstEntry.length) {
+                    for (int e = firstEntry[variable]; e >= 0; e = entryNext[e]) {
+                        int waiting = entryRule[e];
+                        ruleDepth[waiting] = Math.max(ruleDepth[waiting], depth[variable]);
+                        if (--pending[waiting] == 0) {
+                            ready.add(waiting);
+                        }
+                    }
+                }
+                dependents(variable, d -> {
+                    if (!members.get(d) && !region.get(d)) {
+                        examine(d);
+                    }
+                });
+            }
+            for (int i = 0; i < removed.size; i++) {
+                if (!members.get(removed.get(i))) {
+                    flipped.add(removed.get(i));
+                }
+                dropped.clear(removed.get(i));
+            }
+            for (int i = 0; i < touched.size; i++) {
+                firstEntry[touched.get(i)] = -1;
+            }
+            touched.clear();
+            region.clear();
+            return flipped;
+        }
+
+        // Se a variável ainda tem uma regra só com símbolos aceitos ou
+        // membros mais rasos que ela
+        private boolean supported(int variable) {
+            supported = false;
+            rules(variable, body -> {
+                if (supported) {
+                    return;
+                }
+                for (int symbol : body) {
+                    if (!accepted(symbol) && (!members.get(symbol) || depth[symbol] >= depth[variable])) {
+                        return;
+                    }
+                }
+                supported = true;
+            });
+            return supported;
+        }
+
+        private void examine(int variable) {
+            region.set(variable);
+            rules(variable, body -> {
+                if (rules == ruleHead.length) {
+                    ruleHead = Arrays.copyOf(ruleHead, rules * 2);
+                    ruleDepth = Arrays.copyOf(ruleDepth, rules * 2);
+                    pending = Arrays.copyOf(pending, rules * 2);
+                }
+                int rule = rules++;
+                ruleHead[rule] = variable;
+                ruleDepth[rule] = -1;
+                int missing = 0;
+                for (int symbol : body) {
+                    if (accepted(symbol)) {
+                        continue;
+                    }
+                    if (members.get(symbol)) {
+                        ruleDepth[rule] = Math.max(ruleDepth[rule], depth[symbol]);
+                    } else {
+                        missing++;
+                        wait(symbol, rule);
+                    }
+                }
+                pending[rule] = missing;
+                if (missing == 0) {
+                    ready.add(rule);
+                }
+            });
+        }
+
+        private void wait(int symbol, int rule) {
+            if (symbol >= firstEntry.length) {
+                int filled = firstEntry.length;
+                firstEntry = Arrays.copyOf(firstEntry, Math.max(symbol + 1, filled * 2));
+                Arrays.fill(firstEntry, filled, firstEntry.length, -1);
+            }
+            if (entries == entryRule.length) {
+                entryRule = Arrays.copyOf(entryRule, entries * 2);
+                entryNext = Arrays.copyOf(entryNext, entries * 2);
+            }
+            if (firstEntry[symbol] < 0) {
+                touched.add(symbol);
+            }
+            entryRule[entries] = rule;
+            entryNext[entries] = firstEntry[symbol];
+            firstEntry[symbol] = entries++;
+        }
+    }
+
+    // Índice reverso: para cada símbolo, as variáveis cujas produções o citam
+    private static final class Occurrences {
+        private IntSet[] sets = new IntSet[16];
+
+        // before e after: os símbolos citados pela variável antes e depois,
+        // ordenados e sem repetição
+        void replace(int variable, int[] before, int[] after) {
+            int i = 0;
+            int j = 0;
+            while (i < before.length || j < after.length) {
+                if (j == after.length || (i < before.length && before[i] < after[j])) {
+                    set(before[i++]).remove(variable);
+                } else if (i == before.length || after[j] < before[i]) {
+                    set(after[j++]).add(variable);
+                } else {
+                    i++;
+                    j++;
+                }
+            }
+        }
+
+        void forEach(int symbol, IntConsumer action) {
+            if (symbol < sets.length && sets[symbol] != null) {
+                sets[symbol].forEach(action);
+            }
+        }
+
+        private IntSet set(int symbol) {
+            if (symbol >= sets.length) {
+                sets = Arrays.copyOf(sets, Math.max(symbol + 1, sets.length * 2));
+            }
+            if (sets[symbol] == null) {
+                sets[symbol] = new IntSet();
+            }
+            return sets[symbol];
+        }
+    }
+
+    // Conjunto de inteiros não negativos com endereçamento aberto; guarda
+    // valor + 1 e remove deslocando os seguintes do mesmo agrupamento
+    private static final class IntSet {
+        private int[] slots = new int[4];
+        private int size;
+
+        void add(int value) {
+            if ((size + 1) * 2 > slots.length) {
+                int[] old = slots;
+                slots = new int[old.length * 2];
+                size = 0;
+                for (int slot : old) {
+                    if (slot != 0) {
+                        add(slot - 1);
+                    }
+                }
+            }
+            int mask = slots.length - 1;
+            int slot = hash(value) & mask;
+            while (slots[slot] != 0) {
+                if (slots[slot] == value + 1) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = value + 1;
+            size++;
+        }
+
+        void remove(int value) {
+            int mask = slots.length - 1;
+            int hole = hash(value) & mask;
+            while (slots[hole] != value + 1) {
+                if (slots[hole] == 0) {
+                    return;
+                }
+                hole = (hole + 1) & mask;
+            }
+            slots[hole] = 0;
+            size--;
+            for (int next = (hole + 1) & mask; slots[next] != 0; next = (next + 1) & mask) {
+                int home = hash(slots[next] - 1) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    slots[hole] = slots[next];
+                    slots[next] = 0;
+                    hole = next;
+                }
+            }
+        }
+
+        void forEach(IntConsumer action) {
+            for (int slot : slots) {
+                if (slot != 0) {
+                    action.accept(slot - 1);
+                }
+            }
+        }
+
+        private static int hash(int value) {
+            int h = value * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    private static final class IntList {
+        int[] items = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+
+        int get(int i) {
+            return items[i];
+        }
+
+        int pop() {
+            return items[--size];
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(items, size);
+        }
+    }
+}
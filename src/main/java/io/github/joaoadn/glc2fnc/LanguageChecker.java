@@ -0,0 +1,287 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.util.*;
+
+// Verificação da conversão: compara as cadeias de comprimento até maxLength
+// geradas por duas gramáticas, sem enumerar todas as cadeias do alfabeto.
+// Os conjuntos de cadeias de cada variável são montados por comprimento, em
+// ordem crescente. Para o comprimento n, cada produção é expandida uma única
+// vez com cada variável do corpo gerando menos de n símbolos, o que só usa
+// conjuntos já prontos. O que falta são as derivações em que uma variável X
+// do corpo gera tudo e as demais geram a cadeia vazia (A -> αXβ com α e β
+// anuláveis, inclusive A -> X): essas "arestas unitárias" repassam para A as
+// cadeias novas de X, e cada cadeia atravessa cada aresta uma única vez.
+// Cada cadeia é uma String com um code point por terminal (o índice do
+// terminal no alfabeto comum às duas gramáticas, pulando os surrogates), o
+// que vale para as duas sintaxes e para mais de 65536 terminais.
+final class LanguageChecker {
+
+    private static final int UNREACHABLE = Integer.MAX_VALUE / 2;
+
+    // Índices a partir do início dos surrogates são deslocados para depois deles
+    private static final int SURROGATES = Character.MAX_SURROGATE - Character.MIN_SURROGATE + 1;
+    private static final int MAX_TERMINALS = Character.MAX_CODE_POINT + 1 - SURROGATES;
+
+    private final Grammar grammar;
+    private final Map<String, Integer> alphabet;
+    private final int[] codes;
+
+    // Arestas unitárias em formato CSR: as variáveis que recebem as cadeias
+    // de X estão em unitHeads[unitBegin[X] .. unitBegin[X + 1])
+    private final int[] unitBegin;
+    private final int[] unitHeads;
+
+    // Menor comprimento gerado por cada símbolo e por cada produção
+    private final int[] minLength;
+    private final int[] minProduction;
+
+    // sets.get(n).get(A): cadeias de comprimento n geradas por A (null se nenhuma)
+    private final List<List<Set<String>>> sets = new ArrayList<>();
+
+    private LanguageChecker(Grammar grammar, Map<String, Integer> alphabet) {
+        this.grammar = grammar;
+        this.alphabet = alphabet;
+        SymbolTable symbols = grammar.symbols;
+        codes = new int[symbols.size()];
+        Arrays.fill(codes, -1);
+
+        minLength = new int[symbols.size()];
+        for (int s = 0; s < symbols.size(); s++) {
+            minLength[s] = symbols.isVariable(s) ? UNREACHABLE : 1;
+        }
+        minProduction = new int[grammar.size()];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < grammar.size(); p++) {
+                int length = 0;
+                for (int i = 0; i < grammar.length(p); i++) {
+                    length = Math.min(UNREACHABLE, length + minLength[grammar.symbol(p, i)]);
+                }
+                minProduction[p] = length;
+                if (length < minLength[grammar.head(p)]) {
+                    minLength[grammar.head(p)] = length;
+                    changed = true;
+                }
+            }
+        }
+
+        unitBegin = new int[symbols.size() + 1];
+        for (int p = 0; p < grammar.size(); p++) {
+            for (int i = 0; i < grammar.length(p); i++) {
+                if (isUnitPosition(p, i)) {
+                    unitBegin[grammar.symbol(p, i) + 1]++;
+                }
+            }
+        }
+        for (int s = 0; s < symbols.size(); s++) {
+            unitBegin[s + 1] += unitBegin[s];
+        }
+        int[] fill = Arrays.copyOf(unitBegin, unitBegin.length);
+        unitHeads = new int[unitBegin[symbols.size()]];
+        for (int p = 0; p < grammar.size(); p++) {
+            for (int i = 0; i < grammar.length(p); i++) {
+                if (isUnitPosition(p, i)) {
+                    unitHeads[fill[grammar.symbol(p, i)]++] = grammar.head(p);
+                }
+            }
+        }
+    }
+
+    // O símbolo i do corpo é uma variável alcançável, diferente da cabeça, e
+    // todos os outros símbolos são anuláveis
+    private boolean isUnitPosition(int p, int i) {
+        int symbol = grammar.symbol(p, i);
+        if (!grammar.symbols.isVariable(symbol) || symbol == grammar.head(p) || minLength[symbol] >= UNREACHABLE) {
+            return false;
+        }
+        for (int j = 0; j < grammar.length(p); j++) {
+            if (j != i && minLength[grammar.symbol(p, j)] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Retorna null quando as duas gramáticas geram as mesmas cadeias de
+    // comprimento até maxLength; senão, descreve a menor cadeia (e, entre as
+    // de mesmo comprimento, a primeira em ordem alfabética) gerada por só uma
+    static String findDifference(Grammar original, Grammar converted, int maxLength) {
+        Map<String, Integer> alphabet = new HashMap<>();
+        LanguageChecker first = new LanguageChecker(original, alphabet);
+        LanguageChecker second = new LanguageChecker(converted, alphabet);
+        List<String> names = new ArrayList<>();
+        for (int n = 0; n <= maxLength; n++) {
+            Set<String> firstStrings = first.strings(n);
+            Set<String> secondStrings = second.strings(n);
+            if (firstStrings.equals(secondStrings)) {
+                continue;
+            }
+            names.clear();
+            names.addAll(Collections.nCopies(alphabet.size(), null));
+            for (Map.Entry<String, Integer> entry : alphabet.entrySet()) {
+                names.set(entry.getValue(), entry.getKey());
+            }
+            String smallest = null;
+            boolean inOriginal = false;
+            for (int side = 0; side < 2; side++) {
+                Set<String> mine = side == 0 ? firstStrings : secondStrings;
+                Set<String> other = side == 0 ? secondStrings : firstStrings;
+                for (String string : mine) {
+                    if (!other.contains(string)) {
+                        String decoded = decode(string, names, original.symbols.tokenized);
+                        if (smallest == null || decoded.compareTo(smallest) < 0) {
+                            smallest = decoded;
+                            inOriginal = side == 0;
+                        }
+                    }
+                }
+            }
+            return "a cadeia \"" + smallest + "\" é gerada só pela gramática " + (inOriginal ? "original" : "convertida")
+                    + " (comparação até o comprimento " + maxLength + ")";
+        }
+        return null;
+    }
+
+    private static String decode(String string, List<String> names, boolean tokenized) {
+        StringBuilder decoded = new StringBuilder();
+        for (int i = 0; i < string.length(); i += Character.charCount(string.codePointAt(i))) {
+            if (tokenized && i > 0) {
+                decoded.append(' ');
+            }
+            int code = string.codePointAt(i);
+            decoded.append(names.get(code < Character.MIN_SURROGATE ? code : code - SURROGATES));
+        }
+        return decoded.toString();
+    }
+
+    // Cadeias de comprimento n geradas pelo símbolo inicial; os comprimentos
+    // são calculados em ordem crescente
+    private Set<String> strings(int n) {
+        while (sets.size() <= n) {
+            computeLength(sets.size());
+        }
+        Set<String> strings = grammar.start >= 0 ? sets.get(n).get(grammar.start) : null;
+        return strings == null ? Set.of() : strings;
+    }
+
+    private void computeLength(int n) {
+        List<Set<String>> row = new ArrayList<>(Collections.nCopies(grammar.symbols.size(), null));
+        sets.add(row);
+        if (n == 0) {
+            for (int variable = 0; variable < grammar.symbols.size(); variable++) {
+                if (minLength[variable] == 0) {
+                    row.set(variable, new HashSet<>(Set.of("")));
+                }
+            }
+            return;
+        }
+
+        // Cadeias novas de cada variável ainda não repassadas pelas arestas
+        List<List<String>> pending = new ArrayList<>(Collections.nCopies(grammar.symbols.size(), null));
+        int[] queue = new int[grammar.symbols.size()];
+        int head = 0;
+        int size = 0;
+
+        List<String> produced = new ArrayList<>();
+        StringBuilder prefix = new StringBuilder();
+        for (int p = 0; p < grammar.size(); p++) {
+            if (minProduction[p] > n) {
+                continue;
+            }
+            int[] body = grammar.body(p);
+            int[] suffixMin = new int[body.length + 1];
+            for (int i = body.length - 1; i >= 0; i--) {
+                suffixMin[i] = suffixMin[i + 1] + minLength[body[i]];
+            }
+            produced.clear();
+            expand(body, 0, n, n - 1, suffixMin, prefix, produced);
+            int variable = grammar.head(p);
+            for (String string : produced) {
+                if (add(row, variable, string)) {
+                    if (pending.get(variable) == null) {
+                        pending.set(variable, new ArrayList<>());
+                        queue[(head + size++) % queue.length] = variable;
+                    }
+                    pending.get(variable).add(string);
+                }
+            }
+        }
+
+        while (size > 0) {
+            int variable = queue[head];
+            head = (head + 1) % queue.length;
+            size--;
+            List<String> strings = pending.get(variable);
+            pending.set(variable, null);
+            for (int k = unitBegin[variable]; k < unitBegin[variable + 1]; k++) {
+                int target = unitHeads[k];
+                for (String string : strings) {
+                    if (add(row, target, string)) {
+                        if (pending.get(target) == null) {
+                            pending.set(target, new ArrayList<>());
+                            queue[(head + size++) % queue.length] = target;
+                        }
+                        pending.get(target).add(string);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean add(List<Set<String>> row, int variable, String string) {
+        Set<String> strings = row.get(variable);
+        if (strings == null) {
+            strings = new HashSet<>();
+            row.set(variable, strings);
+        }
+        return strings.add(string);
+    }
+
+    // Cadeias de comprimento remaining geradas por body[i ..], com cada
+    // variável gerando no máximo limit símbolos, acrescentadas a prefix;
+    // suffixMin[i] é o menor comprimento que body[i ..] consegue gerar
+    private void expand(int[] body, int i, int remaining, int limit, int[] suffixMin, StringBuilder prefix,
+                        List<String> produced) {
+        if (i == body.length) {
+            if (remaining == 0) {
+                produced.add(prefix.toString());
+            }
+            return;
+        }
+        int symbol = body[i];
+        int rest = suffixMin[i + 1];
+        if (!grammar.symbols.isVariable(symbol)) {
+            if (remaining - 1 >= rest) {
+                int mark = prefix.length();
+                prefix.appendCodePoint(code(symbol));
+                expand(body, i + 1, remaining - 1, limit, suffixMin, prefix, produced);
+                prefix.setLength(mark);
+            }
+            return;
+        }
+        int mark = prefix.length();
+        for (int length = minLength[symbol]; length <= Math.min(limit, remaining - rest); length++) {
+            Set<String> strings = sets.get(length).get(symbol);
+            if (strings == null) {
+                continue;
+            }
+            for (String string : strings) {
+                prefix.append(string);
+                expand(body, i + 1, remaining - length, limit, suffixMin, prefix, produced);
+                prefix.setLength(mark);
+            }
+        }
+    }
+
+    private int code(int terminal) {
+        if (codes[terminal] < 0) {
+            int index = alphabet.computeIfAbsent(grammar.symbols.name(terminal), name -> alphabet.size());
+            if (index >= MAX_TERMINALS) {
+                throw new ConversionLimitException("a verificação suporta no máximo " + MAX_TERMINALS + " terminais");
+            }
+            codes[terminal] = index < Character.MIN_SURROGATE ? index : index + SURROGATES;
+        }
+        return codes[terminal];
+    }
+}
@@ -0,0 +1,10 @@
+package io.github.joaoadn.glc2fnc;
+
+// Lançada pela verificação da conversão quando a gramática convertida não
+// gera as mesmas cadeias que a original até o comprimento comparado.
+public class LanguageMismatchException extends RuntimeException {
+
+    LanguageMismatchException(String message) {
+        super(message);
+    }
+}
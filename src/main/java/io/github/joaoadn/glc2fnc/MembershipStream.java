@@ -0,0 +1,91 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Testa muitas cadeias contra a mesma gramática já convertida. As cadeias
+// (uma por linha) são lidas em lotes; cada lote é dividido em fatias
+// contíguas entre as threads, cada uma com seus próprios buffers de tabela
+// reaproveitados de cadeia em cadeia, e o próximo lote é lido enquanto o atual
+// é testado. Os resultados saem na ordem da entrada.
+final class MembershipStream {
+
+    static final int BATCH_SIZE = 8192;
+
+    private MembershipStream() {
+    }
+
+    static void run(CykRecognizer recognizer, BufferedReader input, Writer output, int jobs) throws IOException {
+        int threads = jobs > 0 ? jobs : Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CykRecognizer.Buffers[] buffers = new CykRecognizer.Buffers[threads];
+        for (int k = 0; k < threads; k++) {
+            buffers[k] = new CykRecognizer.Buffers();
+        }
+        BufferedWriter bw = new BufferedWriter(output, 1 << 16);
+
+        long startTime = System.nanoTime();
+        long total = 0;
+        long accepted = 0;
+        try {
+            List<String> batch = readBatch(input);
+            boolean[] results = new boolean[BATCH_SIZE];
+            while (!batch.isEmpty()) {
+                List<Future<?>> running = submit(pool, recognizer, batch, results, buffers);
+                List<String> next = readBatch(input);
+                for (Future<?> slice : running) {
+                    slice.get();
+                }
+                for (int k = 0; k < batch.size(); k++) {
+                    bw.write(results[k] ? "ACEITA  " : "REJEITA ");
+                    bw.write(batch.get(k));
+                    bw.newLine();
+                    accepted += results[k] ? 1 : 0;
+                }
+                total += batch.size();
+                batch = next;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("teste de pertinência interrompido");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+            bw.flush();
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        GLCtoFNC.standardError().printf("%d cadeias (%d aceitas) em %.2f s: %.0f cadeias/s%n", total, accepted, seconds,
+                total / Math.max(seconds, 1e-9));
+    }
+
+    private static List<Future<?>> submit(ExecutorService pool, CykRecognizer recognizer, List<String> batch,
+                                          boolean[] results, CykRecognizer.Buffers[] buffers) {
+        int slices = Math.min(buffers.length, batch.size());
+        List<Future<?>> running = new ArrayList<>(slices);
+        for (int k = 0; k < slices; k++) {
+            int from = (int) ((long) batch.size() * k / slices);
+            int to = (int) ((long) batch.size() * (k + 1) / slices);
+            CykRecognizer.Buffers slice = buffers[k];
+            running.add(pool.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    results[i] = recognizer.accepts(batch.get(i), slice);
+                }
+            }));
+        }
+        return running;
+    }
+
+    private static List<String> readBatch(BufferedReader input) throws IOException {
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        String line;
+        while (batch.size() < BATCH_SIZE && (line = input.readLine()) != null) {
+            batch.add(line);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,354 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Sorteio de cadeias de um comprimento dado a partir da gramática na FNC.
+// counts[A][n] é o número de derivações de A que geram cadeias de
+// comprimento n (até maxLength). As tabelas são montadas uma vez, dos
+// comprimentos menores para os maiores, e depois só lidas, então o mesmo
+// objeto atende várias threads. Cada sorteio escolhe a produção de A, e o
+// ponto de divisão do corpo BC, com probabilidade proporcional ao número de
+// derivações que passam por ela: todas as derivações de comprimento n têm a
+// mesma chance. Numa gramática ambígua, uma cadeia com várias derivações sai
+// proporcionalmente mais vezes.
+public final class StringSampler {
+
+    static final int BATCH_SIZE = 8192;
+    // Cadeias por gerador; fixo para que a saída não dependa do número de threads
+    private static final int BLOCK_SIZE = 1024;
+
+    private final SymbolTable symbols;
+    private final int start;
+    private final int maxLength;
+    private final boolean acceptsEmpty;
+
+    // Terminais das produções A -> a, agrupados por A em formato CSR
+    private final int[] terminalBegin;
+    private final int[] terminals;
+
+    // Pares (B, C) das produções A -> BC, agrupados por A em formato CSR.
+    // pairCounts[k][n] acumula as derivações de comprimento n dos pares de A
+    // até o par k, inclusive, o que permite escolher o par por busca binária.
+    private final int[] pairBegin;
+    private final int[] pairFirst;
+    private final int[] pairSecond;
+    private final BigInteger[][] pairCounts;
+
+    private final BigInteger[][] counts;
+
+    // As mesmas tabelas em long quando a contagem cabe (-1 quando não cabe).
+    // Os produtos e acumulados abaixo de uma contagem que cabe também cabem,
+    // então a maior parte dos passos de um sorteio dispensa BigInteger.
+    private final long[][] smallCounts;
+    private final long[][] smallPairCounts;
+
+    public static StringSampler compile(List<String> rules, GLCtoFNC.Options options, int maxLength) {
+        List<String> lines = new ArrayList<>(rules.size());
+        for (String rule : rules) {
+            lines.add(rule.trim());
+        }
+        return new StringSampler(GLCtoFNC.processGrammar(GLCtoFNC.parseGrammar(lines), options), maxLength);
+    }
+
+    StringSampler(Grammar cnf, int maxLength) {
+        this(cnf, maxLength, true);
+    }
+
+    // Sem as tabelas em long, todo sorteio usa BigInteger (para os testes)
+    StringSampler(Grammar cnf, int maxLength, boolean longTables) {
+        symbols = cnf.symbols;
+        start = cnf.start;
+        this.maxLength = maxLength;
+        int size = symbols.size();
+
+        boolean empty = false;
+        terminalBegin = new int[size + 1];
+        pairBegin = new int[size + 1];
+        for (int p = 0; p < cnf.size(); p++) {
+            int length = cnf.length(p);
+            if (length == 0 && cnf.head(p) == cnf.start) {
+                empty = true;
+            } else if (length == 1 && !symbols.isVariable(cnf.symbol(p, 0))) {
+                terminalBegin[cnf.head(p) + 1]++;
+            } else if (length == 2 && symbols.isVariable(cnf.symbol(p, 0)) && symbols.isVariable(cnf.symbol(p, 1))) {
+                pairBegin[cnf.head(p) + 1]++;
+            } else {
+                throw new IllegalArgumentException("a gramática não está na FNC: produção de "
+                        + symbols.name(cnf.head(p)) + " com " + length + " símbolos");
+            }
+        }
+        acceptsEmpty = empty;
+        for (int s = 0; s < size; s++) {
+            terminalBegin[s + 1] += terminalBegin[s];
+            pairBegin[s + 1] += pairBegin[s];
+        }
+        terminals = new int[terminalBegin[size]];
+        pairFirst = new int[pairBegin[size]];
+        pairSecond = new int[pairBegin[size]];
+        int[] terminalFill = Arrays.copyOf(terminalBegin, size);
+        int[] pairFill = Arrays.copyOf(pairBegin, size);
+        for (int p = 0; p < cnf.size(); p++) {
+            if (cnf.length(p) == 1) {
+                terminals[terminalFill[cnf.head(p)]++] = cnf.symbol(p, 0);
+            } else if (cnf.length(p) == 2) {
+                pairFirst[pairFill[cnf.head(p)]] = cnf.symbol(p, 0);
+                pairSecond[pairFill[cnf.head(p)]++] = cnf.symbol(p, 1);
+            }
+        }
+
+        counts = new BigInteger[size][maxLength + 1];
+        pairCounts = new BigInteger[pairFirst.length][maxLength + 1];
+        for (BigInteger[] row : counts) {
+            Arrays.fill(row, BigInteger.ZERO);
+        }
+        for (int variable = 0; variable < size; variable++) {
+            if (maxLength >= 1) {
+                counts[variable][1] = BigInteger.valueOf(terminalBegin[variable + 1] - terminalBegin[variable]);
+            }
+        }
+        for (int n = 2; n <= maxLength; n++) {
+            for (int variable = 0; variable < size; variable++) {
+                BigInteger total = BigInteger.ZERO;
+                for (int k = pairBegin[variable]; k < pairBegin[variable + 1]; k++) {
+                    BigInteger[] first = counts[pairFirst[k]];
+                    BigInteger[] second = counts[pairSecond[k]];
+                    for (int split = 1; split < n; split++) {
+                        if (first[split].signum() != 0 && second[n - split].signum() != 0) {
+                            total = total.add(first[split].multiply(second[n - split]));
+                        }
+                    }
+                    pairCounts[k][n] = total;
+                }
+                counts[variable][n] = total;
+            }
+        }
+
+        smallCounts = new long[size][];
+        for (int variable = 0; variable < size; variable++) {
+            smallCounts[variable] = toLong(counts[variable], longTables);
+        }
+        smallPairCounts = new long[pairFirst.length][];
+        for (int k = 0; k < pairFirst.length; k++) {
+            smallPairCounts[k] = toLong(pairCounts[k], longTables);
+        }
+    }
+
+    private static long[] toLong(BigInteger[] values, boolean enabled) {
+        long[] small = new long[values.length];
+        for (int n = 0; n < values.length; n++) {
+            small[n] = enabled && values[n] != null && values[n].bitLength() < 63 ? values[n].longValue() : -1;
+        }
+        return small;
+    }
+
+    public int maxLength() {
+        return maxLength;
+    }
+
+    // Número de derivações de comprimento length a partir do símbolo inicial
+    public BigInteger count(int length) {
+        checkLength(length);
+        if (length == 0) {
+            return acceptsEmpty ? BigInteger.ONE : BigInteger.ZERO;
+        }
+        return counts[start][length];
+    }
+
+    // Retorna null quando a gramática não gera cadeias desse comprimento. Os
+    // terminais saem separados por espaços e com as aspas do arquivo de saída
+    // na sintaxe de tokens, e juntos na compacta, como o --cyk os lê.
+    public String sample(int length, SplittableRandom random) {
+        if (count(length).signum() == 0) {
+            return null;
+        }
+        StringBuilder out = new StringBuilder();
+        int[] variables = new int[Math.max(1, length)];
+        int[] lengths = new int[Math.max(1, length)];
+        int top = 0;
+        if (length > 0) {
+            variables[0] = start;
+            lengths[0] = length;
+            top = 1;
+        }
+        while (top > 0) {
+            top--;
+            int variable = variables[top];
+            int n = lengths[top];
+            if (n == 1) {
+                int from = terminalBegin[variable];
+                int terminal = terminals[from + random.nextInt(terminalBegin[variable + 1] - from)];
+                if (symbols.tokenized && out.length() > 0) {
+                    out.append(' ');
+                }
+                out.append(symbols.tokenized ? GLCtoFNC.formatToken(symbols, terminal) : symbols.name(terminal));
+                continue;
+            }
+
+            int k;
+            int split = 1;
+            if (smallCounts[variable][n] >= 0) {
+                long r = random.nextLong(smallCounts[variable][n]);
+                k = choosePair(variable, n, r);
+                if (k > pairBegin[variable]) {
+                    r -= smallPairCounts[k - 1][n];
+                }
+                long[] first = smallCounts[pairFirst[k]];
+                long[] second = smallCounts[pairSecond[k]];
+                for (; split < n - 1; split++) {
+                    long derivations = first[split] * second[n - split];
+                    if (r < derivations) {
+                        break;
+                    }
+                    r -= derivations;
+                }
+            } else {
+                BigInteger r = below(counts[variable][n], random);
+                k = choosePair(variable, n, r);
+                if (k > pairBegin[variable]) {
+                    r = r.subtract(pairCounts[k - 1][n]);
+                }
+                BigInteger[] first = counts[pairFirst[k]];
+                BigInteger[] second = counts[pairSecond[k]];
+                for (; split < n - 1; split++) {
+                    if (first[split].signum() == 0 || second[n - split].signum() == 0) {
+                        continue;
+                    }
+                    BigInteger derivations = first[split].multiply(second[n - split]);
+                    if (r.compareTo(derivations) < 0) {
+                        break;
+                    }
+                    r = r.subtract(derivations);
+                }
+            }
+            // C fica embaixo na pilha para B ser expandido antes
+            variables[top] = pairSecond[k];
+            lengths[top++] = n - split;
+            variables[top] = pairFirst[k];
+            lengths[top++] = split;
+        }
+        return out.toString();
+    }
+
+    // Primeiro par de variable cujo acumulado passa de r
+    private int choosePair(int variable, int n, long r) {
+        int low = pairBegin[variable];
+        int high = pairBegin[variable + 1] - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (smallPairCounts[middle][n] > r) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private int choosePair(int variable, int n, BigInteger r) {
+        int low = pairBegin[variable];
+        int high = pairBegin[variable + 1] - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (pairCounts[middle][n].compareTo(r) > 0) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    // Inteiro uniforme em [0, bound), por rejeição sobre bound.bitLength() bits
+    private static BigInteger below(BigInteger bound, SplittableRandom random) {
+        if (bound.bitLength() < 63) {
+            return BigInteger.valueOf(random.nextLong(bound.longValue()));
+        }
+        byte[] bytes = new byte[(bound.bitLength() + 7) / 8];
+        int excess = bytes.length * 8 - bound.bitLength();
+        while (true) {
+            random.nextBytes(bytes);
+            bytes[0] &= (byte) (0xFF >>> excess);
+            BigInteger r = new BigInteger(1, bytes);
+            if (r.compareTo(bound) < 0) {
+                return r;
+            }
+        }
+    }
+
+    private void checkLength(int length) {
+        if (length < 0 || length > maxLength) {
+            throw new IllegalArgumentException("comprimento " + length + " fora das tabelas (0.." + maxLength + ")");
+        }
+    }
+
+    // Escreve count cadeias de comprimento length, uma por linha. Cada bloco
+    // de BLOCK_SIZE cadeias tem um gerador próprio, obtido por split() de um
+    // gerador com a semente dada, na ordem dos blocos: a mesma semente dá a
+    // mesma saída com qualquer número de threads. Os blocos de um lote são
+    // sorteados em paralelo enquanto o lote anterior é escrito.
+    static void run(StringSampler sampler, int length, long count, long seed, Writer output, int jobs)
+            throws IOException {
+        if (count < 0) {
+            throw new IllegalArgumentException("número de cadeias negativo: " + count);
+        }
+        if (sampler.count(length).signum() == 0) {
+            throw new IllegalArgumentException("a gramática não gera cadeias de comprimento " + length);
+        }
+        int threads = jobs > 0 ? jobs : Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        SplittableRandom root = new SplittableRandom(seed);
+        BufferedWriter bw = new BufferedWriter(output, 1 << 16);
+
+        long startTime = System.nanoTime();
+        try {
+            long remaining = count;
+            List<Future<?>> running = List.of();
+            String[] batch = new String[0];
+            while (true) {
+                int size = (int) Math.min(BATCH_SIZE, remaining);
+                String[] next = new String[size];
+                List<Future<?>> submitted = new ArrayList<>();
+                for (int from = 0; from < size; from += BLOCK_SIZE) {
+                    int begin = from;
+                    int end = Math.min(size, from + BLOCK_SIZE);
+                    SplittableRandom random = root.split();
+                    submitted.add(pool.submit(() -> {
+                        for (int i = begin; i < end; i++) {
+                            next[i] = sampler.sample(length, random);
+                        }
+                    }));
+                }
+                remaining -= size;
+                for (Future<?> block : running) {
+                    block.get();
+                }
+                for (String sample : batch) {
+                    bw.write(sample);
+                    bw.newLine();
+                }
+                if (size == 0) {
+                    break;
+                }
+                running = submitted;
+                batch = next;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("sorteio de cadeias interrompido");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+            bw.flush();
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        GLCtoFNC.standardError().printf("%d cadeias de comprimento %d (%s derivações possíveis) em %.2f s: %.0f cadeias/s%n", count,
+                length, sampler.count(length), seconds, count / Math.max(seconds, 1e-9));
+    }
+}
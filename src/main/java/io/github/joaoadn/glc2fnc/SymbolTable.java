@@ -0,0 +1,134 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+// Tabela de símbolos: cada variável ou terminal é internado uma única vez e
+// passa a ser identificado por um inteiro nas etapas da conversão. Variáveis
+// e terminais têm espaços de nomes separados.
+final class SymbolTable {
+
+    // Nomes de variável da sintaxe compacta: A a Z e depois A' a Z'
+    static final int COMPACT_NAMES = 52;
+
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> variableIds = new HashMap<>();
+    private final Map<String, Integer> terminalIds = new HashMap<>();
+    private boolean[] variables = new boolean[16];
+    private final FreshNames fresh = new FreshNames(variableIds::containsKey);
+    private final int[] asciiVariableIds = unknown();
+    private final int[] asciiTerminalIds = unknown();
+    private final int[] primedIds = unknown();
+
+    // Indica se a gramática foi lida na sintaxe de símbolos separados por espaços
+    boolean tokenized;
+
+    int intern(String name, boolean variable) {
+        Map<String, Integer> ids = variable ? variableIds : terminalIds;
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        int newId = names.size();
+        names.add(name);
+        ids.put(name, newId);
+        if (newId == variables.length) {
+            variables = Arrays.copyOf(variables, newId * 2);
+        }
+        variables[newId] = variable;
+        return newId;
+    }
+
+    // Nome em text[from, to). Os símbolos de um caractere ASCII e as
+    // variáveis X' da sintaxe compacta são achados sem criar Strings
+    int intern(CharSequence text, int from, int to, boolean variable) {
+        char c = from < to ? text.charAt(from) : 0x80;
+        if (c < 0x80 && (to - from == 1 || (to - from == 2 && variable && text.charAt(from + 1) == '\''))) {
+            int[] cache = to - from == 2 ? primedIds : variable ? asciiVariableIds : asciiTerminalIds;
+            if (cache[c] < 0) {
+                cache[c] = intern(text.subSequence(from, to).toString(), variable);
+            }
+            return cache[c];
+        }
+        return intern(text.subSequence(from, to).toString(), variable);
+    }
+
+    int variable(String name) {
+        return intern(name, true);
+    }
+
+    int terminal(String name) {
+        return intern(name, false);
+    }
+
+    // Cria uma variável nova com o próximo nome livre de FreshNames
+    int freshVariable(String base) {
+        return intern(fresh.next(base, !tokenized), true);
+    }
+
+    // Nomes para variáveis novas: o nome base seguido do menor sufixo
+    // numérico livre, com um contador por base que evita recomeçar a busca a
+    // cada chamada. Na sintaxe compacta, em que cada variável é uma maiúscula
+    // opcionalmente seguida de ', vem antes a primeira letra livre de A a Z e
+    // depois de A' a Z'; só quando todas estão em uso cai no sufixo numérico
+    // (e a saída passa para a sintaxe de tokens). Quem recebe o nome passa a
+    // considerá-lo em uso em taken. IncrementalConverter usa a mesma sequência
+    // sobre os nomes de uma leitura completa, sem internar nada.
+    static final class FreshNames {
+        private final Predicate<String> taken;
+        private final Map<String, Integer> counters = new TreeMap<>();
+        private int cursor;
+
+        FreshNames(Predicate<String> taken) {
+            this.taken = taken;
+        }
+
+        String next(String base, boolean compact) {
+            while (compact && cursor < COMPACT_NAMES) {
+                String name = compactName(cursor++);
+                if (!taken.test(name)) {
+                    return name;
+                }
+            }
+            int n = counters.getOrDefault(base, 1);
+            while (taken.test(base + n)) {
+                n++;
+            }
+            counters.put(base, n + 1);
+            return base + n;
+        }
+
+        // Resume a posição na sequência
+        String key() {
+            return cursor + "," + counters;
+        }
+    }
+
+    private static int[] unknown() {
+        int[] ids = new int[0x80];
+        Arrays.fill(ids, -1);
+        return ids;
+    }
+
+    static String compactName(int i) {
+        return i < 26 ? String.valueOf((char) ('A' + i)) : (char) ('A' + i - 26) + "'";
+    }
+
+    // Retorna -1 quando o símbolo ainda não foi internado
+    int lookup(String name, boolean variable) {
+        Integer id = (variable ? variableIds : terminalIds).get(name);
+        return id == null ? -1 : id;
+    }
+
+    String name(int id) {
+        return names.get(id);
+    }
+
+    boolean isVariable(int id) {
+        return variables[id];
+    }
+
+    int size() {
+        return names.size();
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.IOException;
+import java.nio.file.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchConverterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void outputMirrorsTheInputTree() throws IOException {
+        Path input = directory.resolve("in");
+        Files.createDirectories(input.resolve("a"));
+        Files.createDirectories(input.resolve("b"));
+        Files.writeString(input.resolve("a/g.txt"), "S -> aSb | ab\n");
+        Files.writeString(input.resolve("b/g.txt"), "S -> aS | b\n");
+        Path output = directory.resolve("out");
+
+        BatchConverter.run(input.toString(), output.toString(), 2, new GLCtoFNC.Options());
+
+        assertEquals(GLCtoFNC.convert("S -> aSb | ab\n"), Files.readString(output.resolve("a/g_fnc.txt")));
+        assertEquals(GLCtoFNC.convert("S -> aS | b\n"), Files.readString(output.resolve("b/g_fnc.txt")));
+    }
+
+    @Test
+    void globAlsoMatchesFilesAtTheRoot() throws IOException {
+        Path input = directory.resolve("grammars");
+        Files.createDirectories(input.resolve("sub"));
+        Files.writeString(input.resolve("top.txt"), "S -> ab\n");
+        Files.writeString(input.resolve("sub/deep.txt"), "S -> aS | b\n");
+        Path output = directory.resolve("out");
+
+        BatchConverter.run(input.toString().replace('\\', '/') + "/**/*.txt", output.toString(), 1,
+                new GLCtoFNC.Options());
+
+        assertEquals(GLCtoFNC.convert("S -> ab\n"), Files.readString(output.resolve("top_fnc.txt")));
+        assertEquals(GLCtoFNC.convert("S -> aS | b\n"), Files.readString(output.resolve("sub/deep_fnc.txt")));
+    }
+
+    @Test
+    void inputsWithTheSameOutputAreRejected() throws IOException {
+        Files.writeString(directory.resolve("g.txt"), "S -> ab\n");
+        Path manifest = directory.resolve("list.txt");
+        Files.writeString(manifest, "g.txt\n./g.txt\n");
+        Path output = directory.resolve("out");
+
+        assertThrows(IOException.class,
+                () -> BatchConverter.run("@" + manifest, output.toString(), 1, new GLCtoFNC.Options()));
+        assertFalse(Files.exists(output.resolve("g_fnc.txt")));
+    }
+}
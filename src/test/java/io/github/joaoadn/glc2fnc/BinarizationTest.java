@@ -0,0 +1,64 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// REPAIR fatora os pares repetidos em toda a gramática antes de dobrar o
+// resto, então não pode terminar com mais produções que RIGHT_FOLD, que só
+// compartilha sufixos idênticos.
+class BinarizationTest {
+
+    private static final GLCtoFNC.Options RIGHT_FOLD = new GLCtoFNC.Options().verbose(false);
+    private static final GLCtoFNC.Options REPAIR = new GLCtoFNC.Options().verbose(false)
+            .binarization(GLCtoFNC.Binarization.REPAIR);
+
+    @Test
+    void repeatedSuffixesNeverCostMoreProductions() {
+        Random random = new Random(3);
+        for (int round = 0; round < 40; round++) {
+            List<String> rules = repeatedSuffixes(random);
+            int folded = GLCtoFNC.processGrammar(GLCtoFNC.parseGrammar(rules), RIGHT_FOLD).size();
+            int repaired = GLCtoFNC.processGrammar(GLCtoFNC.parseGrammar(rules), REPAIR).size();
+            assertTrue(repaired <= folded, rules + ": " + repaired + " > " + folded);
+        }
+    }
+
+    // Prefixos repetidos não são compartilhados pela dobra à direita
+    @Test
+    void repeatedPrefixesCostFewerProductions() {
+        List<String> rules = List.of("S -> ABCDa | ABCDb | ABCDc | ABCDd", "A -> a", "B -> b", "C -> c", "D -> d");
+        int folded = GLCtoFNC.processGrammar(GLCtoFNC.parseGrammar(rules), RIGHT_FOLD).size();
+        int repaired = GLCtoFNC.processGrammar(GLCtoFNC.parseGrammar(rules), REPAIR).size();
+        assertTrue(repaired < folded, repaired + " >= " + folded);
+    }
+
+    // Corpos longos formados por um começo aleatório e um de poucos sufixos
+    private static List<String> repeatedSuffixes(Random random) {
+        String variables = "ABCDEFGHIJ";
+        String[] suffixes = new String[3];
+        for (int s = 0; s < suffixes.length; s++) {
+            suffixes[s] = word(random, variables, 3 + random.nextInt(4));
+        }
+        List<String> rules = new ArrayList<>();
+        List<String> start = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            start.add(word(random, variables + "xyz", 1 + random.nextInt(3)) + suffixes[random.nextInt(suffixes.length)]);
+        }
+        rules.add("S -> " + String.join(" | ", start));
+        for (char variable : variables.toCharArray()) {
+            rules.add(variable + " -> " + Character.toLowerCase(variable) + " | " + word(random, variables, 2));
+        }
+        return rules;
+    }
+
+    private static String word(Random random, String alphabet, int length) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return word.toString();
+    }
+}
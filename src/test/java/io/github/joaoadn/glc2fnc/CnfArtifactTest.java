@@ -0,0 +1,114 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CnfArtifactTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void startIsMinusOneForAnEmptyLanguage() throws IOException {
+        CnfArtifact artifact = writeAndMap("S -> aS");
+
+        assertEquals(-1, artifact.start());
+        assertFalse(artifact.acceptsEmpty());
+        CykRecognizer recognizer = new CykRecognizer(artifact);
+        assertFalse(recognizer.accepts(""));
+        assertFalse(recognizer.accepts("a"));
+    }
+
+    @Test
+    void startNamesTheConvertedStartSymbol() throws IOException {
+        CnfArtifact artifact = writeAndMap("S -> aSb | .");
+
+        assertEquals("S'", artifact.name(artifact.start()));
+        assertTrue(artifact.acceptsEmpty());
+        CykRecognizer recognizer = new CykRecognizer(artifact);
+        assertTrue(recognizer.accepts(""));
+        assertTrue(recognizer.accepts("aabb"));
+        assertFalse(recognizer.accepts("aab"));
+    }
+
+    // As tabelas montadas do arquivo mapeado decidem como as do modelo interno
+    @Test
+    void mappedRecognizerMatchesTheHeapOne() throws IOException {
+        List<List<String>> grammars = List.of(
+                List.of("S -> aSbS | ."),
+                List.of("S -> AB | BA | a", "A -> aA | b | .", "B -> AbB | SS | a"),
+                List.of("<E> -> <E> + <T> | <T>", "<T> -> <T> * <F> | <F>", "<F> -> ( <E> ) | x | y"));
+        String[][] alphabets = {{"a", "b"}, {"a", "b", "c"}, {"x", "y", "+", "*", "(", ")"}};
+        Random random = new Random(11);
+        for (int g = 0; g < grammars.size(); g++) {
+            Grammar cnf = GLCtoFNC.processGrammar(GLCtoFNC.parseGrammar(grammars.get(g)), new GLCtoFNC.Options());
+            Path file = directory.resolve("fnc" + g + ".bin");
+            CnfArtifact.write(cnf, file);
+            CykRecognizer heap = new CykRecognizer(cnf);
+            CykRecognizer mapped = new CykRecognizer(CnfArtifact.map(file));
+            String separator = cnf.symbols.tokenized ? " " : "";
+            for (int i = 0; i < 2000; i++) {
+                StringJoiner input = new StringJoiner(separator);
+                for (int length = random.nextInt(12); length > 0; length--) {
+                    input.add(alphabets[g][random.nextInt(alphabets[g].length)]);
+                }
+                assertEquals(heap.accepts(input.toString()), mapped.accepts(input.toString()), input.toString());
+            }
+        }
+    }
+
+    // Contadores negativos, um início fora da tabela e contadores que, em
+    // aritmética de int, dariam a volta e voltariam ao tamanho do arquivo
+    @Test
+    void corruptHeaderCountsAreRejected() throws IOException {
+        Grammar cnf = GLCtoFNC.processGrammar(GLCtoFNC.parseGrammar(List.of("S -> AB | a", "A -> a", "B -> b")),
+                new GLCtoFNC.Options());
+        Path file = directory.resolve("fnc.bin");
+        CnfArtifact.write(cnf, file);
+        byte[] original = Files.readAllBytes(file);
+        ByteBuffer header = ByteBuffer.wrap(original).order(ByteOrder.LITTLE_ENDIAN);
+        int symbols = header.getInt(12);
+        int pairs = header.getInt(20);
+
+        int[][] corruptions = {{12, -1}, {20, -5}, {24, Integer.MIN_VALUE}, {32, -1}, {16, symbols}, {16, -2},
+                {20, pairs + (1 << 30)}, {28, header.getInt(28) + (1 << 30)}};
+        for (int[] corruption : corruptions) {
+            ByteBuffer bytes = ByteBuffer.wrap(original.clone()).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.putInt(corruption[0], corruption[1]);
+            Files.write(file, bytes.array());
+            IOException e = assertThrows(IOException.class, () -> CnfArtifact.map(file), Arrays.toString(corruption));
+            assertEquals("arquivo FNC binário truncado ou corrompido", e.getMessage(), Arrays.toString(corruption));
+        }
+
+        Files.write(file, original);
+        assertEquals(symbols, CnfArtifact.map(file).symbolCount());
+    }
+
+    // O CRC32C cobre o corpo: um byte trocado nos nomes é percebido no mapeamento
+    @Test
+    void corruptBodyFailsTheChecksum() throws IOException {
+        Path file = directory.resolve("fnc.bin");
+        CnfArtifact.write(GLCtoFNC.processGrammar(GLCtoFNC.parseGrammar(List.of("S -> ab")), new GLCtoFNC.Options()), file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> CnfArtifact.map(file));
+        assertTrue(e.getMessage().startsWith("soma de verificação inválida"), e.getMessage());
+        assertNotNull(CnfArtifact.map(file, false));
+    }
+
+    private CnfArtifact writeAndMap(String... rules) throws IOException {
+        Grammar cnf = GLCtoFNC.processGrammar(GLCtoFNC.parseGrammar(List.of(rules)), new GLCtoFNC.Options());
+        Path file = directory.resolve("fnc.bin");
+        CnfArtifact.write(cnf, file);
+        return CnfArtifact.map(file);
+    }
+}
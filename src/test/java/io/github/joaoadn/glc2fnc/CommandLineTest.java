@@ -0,0 +1,111 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Saídas da linha de comando, capturadas em bytes e lidas como UTF-8
+class CommandLineTest {
+
+    @TempDir
+    Path directory;
+
+    // O resumo de --verbose vai para a saída de erro, e a de --cyk fica só com as respostas
+    @Test
+    void verboseGoesToStandardError() throws IOException {
+        Path grammar = directory.resolve("glc.txt");
+        Files.writeString(grammar, "S -> aSb | ab | X\nX -> Xa\n", StandardCharsets.UTF_8);
+
+        Output output = run("--verbose", "--cyk", grammar.toString(), "ab", "aab");
+        assertEquals("ACEITA  ab\nREJEITA aab\n", output.out.replace(System.lineSeparator(), "\n"));
+        assertTrue(output.err.contains("Símbolos inúteis: 3 produções e 1 variáveis removidas"), output.err);
+        assertTrue(output.err.contains("Binarização: 6 produções antes, 7 depois (1 variáveis novas)"), output.err);
+    }
+
+    // Com um charset de plataforma sem acentos, o cabeçalho sairia "Vari?veis"
+    @Test
+    void statsAndBatchSummaryAreUtf8() throws IOException {
+        Path grammar = directory.resolve("glc.txt");
+        Files.writeString(grammar, "S -> aSb | ab\n", StandardCharsets.UTF_8);
+
+        Output stats = run("--stats", grammar.toString(), directory.resolve("fnc.txt").toString());
+        assertTrue(stats.out.contains("Variáveis"), stats.out);
+        assertTrue(stats.out.contains("Produções"), stats.out);
+
+        Output batch = run("--batch", grammar.toString());
+        assertTrue(batch.out.contains("produções)"), batch.out);
+        assertTrue(batch.out.contains("1 gramáticas, 1 convertidas"), batch.out);
+    }
+
+    @Test
+    void usageIsUtf8() {
+        Output usage = run();
+        assertEquals(GLCtoFNC.USAGE, usage.status);
+        assertTrue(usage.err.contains("--batch <diretório|glob|@manifesto>"), usage.err);
+    }
+
+    // Um valor ruim ou ausente dá uma linha de erro e o uso, sem exceção
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', value = {
+            "--serve;x;--serve espera um número inteiro, não \"x\"",
+            "--serve;70000;--serve espera um valor entre 0 e 65535, não 70000",
+            "--cache-mb;-1;--cache-mb espera um valor entre 0 e",
+            "--jobs;dois;--jobs espera um número inteiro, não \"dois\"",
+            "--max-productions;0;--max-productions espera um valor entre 1 e",
+            "--length;-3;--length espera um valor entre 0 e",
+            "--count;-1;--count espera um valor entre 0 e",
+            "--seed;1.5;--seed espera um número inteiro, não \"1.5\"",
+            "--verify;k;--verify espera um número inteiro, não \"k\"",
+            "--order;cubic;--order espera classic ou polynomial, não \"cubic\"",
+            "--binarize;left-fold;--binarize espera right-fold ou repair, não \"left-fold\""})
+    void badValuesAreReported(String flag, String value, String message) {
+        Output output = run("glc.txt", "fnc.txt", flag, value);
+        assertEquals(GLCtoFNC.USAGE, output.status);
+        assertTrue(output.err.startsWith("Erro: " + message), output.err);
+        assertTrue(output.err.contains("Uso: java GLCtoFNC"), output.err);
+        assertFalse(output.err.contains("Exception"), output.err);
+    }
+
+    @Test
+    void missingValueIsReported() {
+        Output output = run("glc.txt", "fnc.txt", "--jobs");
+        assertEquals(GLCtoFNC.USAGE, output.status);
+        assertTrue(output.err.startsWith("Erro: falta o valor de --jobs"), output.err);
+    }
+
+    @Test
+    void choicesIgnoreCase() throws IOException {
+        Path grammar = directory.resolve("glc.txt");
+        Files.writeString(grammar, "S -> aSb | ab\n", StandardCharsets.UTF_8);
+        Output output = run("--order", "POLYNOMIAL", "--binarize", "Repair", grammar.toString(),
+                directory.resolve("fnc.txt").toString());
+        assertEquals(0, output.status, output.err);
+    }
+
+    record Output(int status, String out, String err) {
+    }
+
+    static Output run(String... args) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+        int status;
+        try {
+            System.setOut(new PrintStream(outBytes, true));
+            System.setErr(new PrintStream(errBytes, true));
+            status = GLCtoFNC.run(args);
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return new Output(status, outBytes.toString(StandardCharsets.UTF_8), errBytes.toString(StandardCharsets.UTF_8));
+    }
+}
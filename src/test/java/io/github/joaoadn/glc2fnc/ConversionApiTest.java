@@ -0,0 +1,75 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// As sobrecargas de convert têm de dar a mesma saída que a linha de comando
+class ConversionApiTest {
+
+    private static final String GRAMMAR = "S -> aSb | A | .\nA -> aA | abc\n";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void overloadsMatchTheCommandLine() throws IOException {
+        Path input = directory.resolve("glc.txt");
+        Path output = directory.resolve("fnc.txt");
+        Files.writeString(input, GRAMMAR, StandardCharsets.UTF_8);
+        assertEquals(0, GLCtoFNC.run(new String[] {input.toString(), output.toString()}));
+        String expected = Files.readString(output, StandardCharsets.UTF_8);
+
+        assertEquals(expected, GLCtoFNC.convert(GRAMMAR));
+        assertEquals(expected, GLCtoFNC.convert(GRAMMAR, new GLCtoFNC.Options()));
+        StringWriter writer = new StringWriter();
+        GLCtoFNC.convert(new StringReader(GRAMMAR), writer, new GLCtoFNC.Options());
+        assertEquals(expected, writer.toString());
+        assertEquals(expected.lines().toList(), GLCtoFNC.convert(GRAMMAR.lines().toList(), new GLCtoFNC.Options()));
+    }
+
+    // src/fnc.txt é a saída da ferramenta para src/glc1.txt, byte a byte
+    @Test
+    void checkedInSampleIsTheToolOutput() throws IOException {
+        Path output = directory.resolve("fnc.txt");
+        assertEquals(0, GLCtoFNC.run(new String[] {"src/glc1.txt", output.toString()}));
+        assertArrayEquals(Files.readAllBytes(Paths.get("src/fnc.txt")), Files.readAllBytes(output));
+    }
+
+    // 2^8 - 1 corpos para S
+    @Test
+    void limitIsReportedAsAnException() {
+        StringBuilder grammar = new StringBuilder("S -> ABCDEFGH\n");
+        for (char c = 'A'; c <= 'H'; c++) {
+            grammar.append(c).append(" -> ").append(Character.toLowerCase(c)).append(" | .\n");
+        }
+        assertThrows(ConversionLimitException.class,
+                () -> GLCtoFNC.convert(grammar.toString(), new GLCtoFNC.Options().maxProductions(100)));
+    }
+
+    // Sem estado compartilhado, conversões simultâneas não se misturam
+    @Test
+    void concurrentConversionsAgree() throws Exception {
+        String expected = GLCtoFNC.convert(GRAMMAR);
+        GLCtoFNC.Options options = new GLCtoFNC.Options();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                results.add(executor.submit(() -> GLCtoFNC.convert(GRAMMAR, options)));
+            }
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
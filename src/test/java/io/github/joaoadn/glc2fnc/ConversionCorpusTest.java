@@ -0,0 +1,153 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Converte cada gramática de src/test/resources/grammars em todas as
+// combinações de ordem e binarização e compara, com o reconhecedor de
+// referência, as cadeias de até MAX_LENGTH terminais geradas pela entrada e
+// pela FNC. O verificador da etapa VERIFY é comparado com a mesma referência
+// em cópias da FNC com uma produção a menos.
+class ConversionCorpusTest {
+
+    private static final int MAX_LENGTH = 5;
+    private static final int MUTANTS = 16;
+    private static final int GENERATED = 20;
+
+    static Stream<Path> grammars() throws IOException, URISyntaxException {
+        Path directory = Paths.get(ConversionCorpusTest.class.getResource("/grammars").toURI());
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList()).stream();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("grammars")
+    void conversionKeepsTheLanguage(Path file) throws IOException {
+        for (GLCtoFNC.Order order : GLCtoFNC.Order.values()) {
+            for (GLCtoFNC.Binarization binarization : GLCtoFNC.Binarization.values()) {
+                Grammar original = GLCtoFNC.readGrammar(file.toString());
+                int[] alphabet = ReferenceLanguage.alphabet(original);
+                Grammar cnf = GLCtoFNC.processGrammar(original,
+                        new GLCtoFNC.Options().order(order).binarization(binarization));
+                String label = file.getFileName() + " " + order + " " + binarization;
+
+                assertCnf(cnf, label);
+                assertEquals(ReferenceLanguage.strings(original, alphabet, MAX_LENGTH),
+                        ReferenceLanguage.strings(cnf, alphabet, MAX_LENGTH), label);
+                assertNull(LanguageChecker.findDifference(original, cnf, MAX_LENGTH), label);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("grammars")
+    void checkerAgreesWithTheReference(Path file) throws IOException {
+        Grammar cnf = GLCtoFNC.processGrammar(GLCtoFNC.readGrammar(file.toString()), new GLCtoFNC.Options());
+        int[] alphabet = ReferenceLanguage.alphabet(cnf);
+        Set<List<Integer>> expected = ReferenceLanguage.strings(cnf, alphabet, MAX_LENGTH);
+        // No máximo MUTANTS produções, espalhadas pela gramática
+        for (int dropped = 0; dropped < cnf.size(); dropped += Math.max(1, cnf.size() / MUTANTS)) {
+            Grammar mutant = new Grammar(cnf.symbols, cnf.start);
+            for (int p = 0; p < cnf.size(); p++) {
+                if (p != dropped) {
+                    mutant.add(cnf, p);
+                }
+            }
+            String label = file.getFileName() + " sem a produção " + dropped;
+            if (expected.equals(ReferenceLanguage.strings(mutant, alphabet, MAX_LENGTH))) {
+                assertNull(LanguageChecker.findDifference(cnf, mutant, MAX_LENGTH), label);
+            } else {
+                assertThrows(LanguageMismatchException.class, () -> GLCtoFNC.verifyLanguage(cnf, mutant, MAX_LENGTH),
+                        label);
+            }
+        }
+    }
+
+    // As gramáticas geradas têm produções suficientes para DEL e BIN serem
+    // divididas em várias fatias com 4 threads. A saída e a mensagem do
+    // limite de produções têm de ser as da execução sequencial.
+    @Test
+    void parallelStagesMatchTheSequentialRun() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int seed = 0; seed < GENERATED; seed++) {
+                String grammar = String.join("\n", generate(seed, 600, 1500));
+                String label = "semente " + seed;
+                String expected = GLCtoFNC.convert(grammar, new GLCtoFNC.Options());
+                assertEquals(expected, GLCtoFNC.convert(grammar, new GLCtoFNC.Options().parallel(pool)), label);
+
+                Grammar parsed = GLCtoFNC.parseGrammar(List.of(grammar.split("\n")));
+                int expanded = GLCtoFNC.removeLambdaRules(GLCtoFNC.removeInitialRecursion(parsed),
+                        new GLCtoFNC.Options()).size();
+                assertTrue(parsed.size() > 4 * 256 && expanded > 4 * 256, label);
+                long limit = (long) expanded * (seed + 1) / (GENERATED + 1);
+                ConversionLimitException sequential = assertThrows(ConversionLimitException.class,
+                        () -> GLCtoFNC.convert(grammar, new GLCtoFNC.Options().maxProductions(limit)), label);
+                ConversionLimitException parallel = assertThrows(ConversionLimitException.class,
+                        () -> GLCtoFNC.convert(grammar, new GLCtoFNC.Options().maxProductions(limit).parallel(pool)),
+                        label);
+                assertEquals(sequential.getMessage(), parallel.getMessage(), label);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Gramática aleatória na sintaxe de tokens em que toda variável gera um
+    // terminal e é alcançável a partir de V0; cerca de um oitavo é anulável
+    static List<String> generate(long seed, int variables, int productions) {
+        Random random = new Random(seed);
+        List<List<String>> alternatives = new ArrayList<>();
+        for (int v = 0; v < variables; v++) {
+            alternatives.add(new ArrayList<>(List.of("t" + random.nextInt(10))));
+            if (v > 0) {
+                alternatives.get(random.nextInt(v)).add("t" + random.nextInt(10) + " V" + v);
+            }
+            if (random.nextInt(8) == 0) {
+                alternatives.get(v).add(GLCtoFNC.LAMBDA);
+            }
+        }
+        for (int p = 0; p < productions; p++) {
+            StringJoiner body = new StringJoiner(" ");
+            for (int i = 2 + random.nextInt(4); i > 0; i--) {
+                body.add(random.nextInt(10) < 7 ? "V" + random.nextInt(variables) : "t" + random.nextInt(10));
+            }
+            alternatives.get(random.nextInt(variables)).add(body.toString());
+        }
+        List<String> rules = new ArrayList<>();
+        for (int v = 0; v < variables; v++) {
+            rules.add("V" + v + " -> " + String.join(" | ", alternatives.get(v)));
+        }
+        return rules;
+    }
+
+    // Só A -> BC, A -> a e S' -> ., com o símbolo inicial fora dos corpos
+    static void assertCnf(Grammar cnf, String label) {
+        SymbolTable symbols = cnf.symbols;
+        for (int p = 0; p < cnf.size(); p++) {
+            int length = cnf.length(p);
+            if (length == 0) {
+                assertEquals(cnf.start, cnf.head(p), label);
+            } else if (length == 1) {
+                assertFalse(symbols.isVariable(cnf.symbol(p, 0)), label);
+            } else {
+                assertEquals(2, length, label);
+                for (int i = 0; i < 2; i++) {
+                    assertTrue(symbols.isVariable(cnf.symbol(p, i)), label);
+                    assertNotEquals(cnf.start, cnf.symbol(p, i), label);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversionServerTest {
+
+    @Test
+    void reorderedRulesAndAlternativesShareTheCanonicalKey() {
+        GLCtoFNC.Options options = new GLCtoFNC.Options();
+        String key = key(options, "S -> aB | b | .", "B -> bB | c");
+
+        assertEquals(key, key(options, "B -> c | bB", "S -> b | . | aB"));
+        assertEquals(key, key(options, "S -> aB", "B -> bB | c", "S -> . | b"));
+        assertNotEquals(key, key(options, "S -> aB | b", "B -> bB | c"));
+        assertNotEquals(key, key(options, "S -> Ba | b | .", "B -> bB | c"));
+    }
+
+    @Test
+    void optionsThatChangeTheResultChangeTheKeys() {
+        List<String> rules = List.of("S -> aSb | abc | .");
+        GLCtoFNC.Options classic = new GLCtoFNC.Options();
+        String key = key(classic, rules.toArray(new String[0]));
+        byte[] body = String.join("\n", rules).getBytes(StandardCharsets.UTF_8);
+        String rawKey = ConversionServer.rawKey(body, classic);
+
+        for (GLCtoFNC.Options other : List.of(new GLCtoFNC.Options().order(GLCtoFNC.Order.POLYNOMIAL),
+                new GLCtoFNC.Options().binarization(GLCtoFNC.Binarization.REPAIR),
+                new GLCtoFNC.Options().maxProductions(10))) {
+            assertNotEquals(key, key(other, rules.toArray(new String[0])));
+            assertNotEquals(rawKey, ConversionServer.rawKey(body, other));
+        }
+        assertEquals(key, key(new GLCtoFNC.Options().verbose(true), rules.toArray(new String[0])));
+        assertEquals(rawKey, ConversionServer.rawKey(body.clone(), new GLCtoFNC.Options()));
+    }
+
+    // Cada resultado conta ENTRY_BYTES mais 2 bytes por char da chave e do valor
+    @Test
+    void evictionKeepsTheCacheUnderItsSize() {
+        long entry = ConversionServer.ResultCache.entryBytes("a", "x".repeat(40));
+        ConversionServer.ResultCache cache = new ConversionServer.ResultCache(2 * entry + 10, 0);
+        cache.put("a", "x".repeat(40));
+        cache.put("b", "x".repeat(40));
+        assertNotNull(cache.get("a"));
+        cache.put("c", "x".repeat(40));
+
+        // b era o menos usado
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertTrue(cache.stats().contains("bytes=" + 2 * entry + " evictions=1"), cache.stats());
+
+        // O maior valor com chave de um char que cabe sozinho no limite
+        int fits = (int) (entry + 5 - ConversionServer.ResultCache.ENTRY_BYTES / 2) - 1;
+        cache.put("d", "x".repeat(fits + 1));
+        assertNull(cache.get("d"));
+        cache.put("e", "x".repeat(fits));
+        assertNull(cache.get("a"));
+        assertNull(cache.get("c"));
+        assertTrue(cache.stats().contains("bytes=" + (2 * entry + 10) + " evictions=3"), cache.stats());
+    }
+
+    @Test
+    void aliasOfAnEvictedResultIsAMiss() {
+        long entry = ConversionServer.ResultCache.entryBytes("key", "resultado");
+        ConversionServer.ResultCache cache = new ConversionServer.ResultCache(entry + 10,
+                ConversionServer.ResultCache.aliasBytes("raw"));
+        cache.put("key", "resultado");
+        cache.alias("raw", "key");
+        assertEquals("resultado", cache.getByAlias("raw"));
+
+        cache.put("other", "resultado");
+        assertNull(cache.getByAlias("raw"));
+        assertNull(cache.get("key"));
+        assertTrue(cache.stats().contains("hits=1 misses=1"), cache.stats());
+    }
+
+    // Os apelidos têm o próprio limite, e os mais antigos saem primeiro
+    @Test
+    void aliasesStayWithinTheirShare() {
+        long alias = ConversionServer.ResultCache.aliasBytes("raw00");
+        ConversionServer.ResultCache cache = new ConversionServer.ResultCache(0, 10 * alias);
+        for (int i = 0; i < 25; i++) {
+            cache.alias(String.format("raw%02d", i), "key");
+        }
+        assertTrue(cache.stats().contains("aliases=10 bytes=" + 10 * alias), cache.stats());
+
+        // Um oitavo do limite de --cache-mb fica com os apelidos
+        ConversionServer.ResultCache split = new ConversionServer.ResultCache(80 * alias);
+        for (int i = 0; i < 25; i++) {
+            split.alias(String.format("raw%02d", i), "key");
+        }
+        assertTrue(split.stats().contains("aliases=10 "), split.stats());
+    }
+
+    private static String key(GLCtoFNC.Options options, String... rules) {
+        return ConversionServer.canonicalKey(GLCtoFNC.parseGrammar(List.of(rules)), options);
+    }
+}
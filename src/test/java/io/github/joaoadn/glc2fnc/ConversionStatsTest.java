@@ -0,0 +1,60 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.util.*;
+import java.util.regex.*;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversionStatsTest {
+
+    private static final List<String> RULES = List.of("S -> aSb | A | .", "A -> aA | C", "B -> b", "C -> abc");
+
+    @Test
+    void stagesAreRecordedInOrderWithChainedSizes() {
+        ConversionStats stats = new ConversionStats();
+        List<String> result = GLCtoFNC.convert(RULES, new GLCtoFNC.Options().stats(stats));
+        String json = stats.toJson();
+
+        List<String> stages = new ArrayList<>();
+        Matcher stage = Pattern.compile("\"stage\":\"(\\w+)\"").matcher(json);
+        while (stage.find()) {
+            stages.add(stage.group(1));
+        }
+        assertEquals(List.of("START", "DEL", "UNIT", "USELESS", "TERM", "BIN"), stages);
+
+        // A saída de cada etapa é a entrada da seguinte
+        long[] productionsIn = values(json, "productionsIn");
+        long[] productionsOut = values(json, "productionsOut");
+        for (int i = 1; i < stages.size(); i++) {
+            assertEquals(productionsOut[i - 1], productionsIn[i], stages.get(i));
+        }
+        assertEquals(7, productionsIn[0]);
+        assertEquals(GLCtoFNC.parseGrammar(result).size(), productionsOut[stages.size() - 1]);
+        assertTrue(stats.report().startsWith("Etapa"), stats.report());
+    }
+
+    // Conversões que compartilham o objeto são somadas por etapa
+    @Test
+    void conversionsSharingTheObjectAreSummed() {
+        ConversionStats stats = new ConversionStats();
+        GLCtoFNC.Options options = new GLCtoFNC.Options().stats(stats);
+        GLCtoFNC.convert(RULES, options);
+        long[] once = values(stats.toJson(), "productionsOut");
+        GLCtoFNC.convert(RULES, options);
+
+        for (long conversions : values(stats.toJson(), "conversions")) {
+            assertEquals(2, conversions);
+        }
+        long[] twice = values(stats.toJson(), "productionsOut");
+        for (int i = 0; i < once.length; i++) {
+            assertEquals(2 * once[i], twice[i]);
+        }
+    }
+
+    private static long[] values(String json, String field) {
+        return Pattern.compile("\"" + field + "\":(-?\\d+)").matcher(json).results()
+                .mapToLong(m -> Long.parseLong(m.group(1))).toArray();
+    }
+}
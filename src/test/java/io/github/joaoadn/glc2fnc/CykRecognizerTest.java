@@ -0,0 +1,82 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// S gera as cadeias balanceadas de a e b, o que dá uma resposta conhecida
+// para entradas de qualquer comprimento.
+class CykRecognizerTest {
+
+    private static final List<String> BALANCED = List.of("S -> aSbS | .");
+
+    @Test
+    void poolGivesTheSameAnswersAsTheSequentialFill() {
+        CykRecognizer recognizer = CykRecognizer.compile(BALANCED, new GLCtoFNC.Options());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Random random = new Random(3);
+        try {
+            // As maiores têm diagonais com mais de 2 * PARALLEL_GRAIN divisões
+            for (int length : new int[] {0, 1, 2, 7, 40, 300, 600}) {
+                for (int i = 0; i < 6; i++) {
+                    String input = balanced(length, random);
+                    if (i % 2 == 1 && !input.isEmpty()) {
+                        int k = random.nextInt(input.length());
+                        input = input.substring(0, k) + (input.charAt(k) == 'a' ? 'b' : 'a') + input.substring(k + 1);
+                    }
+                    boolean expected = isBalanced(input);
+                    assertEquals(expected, recognizer.accepts(input), input);
+                    assertEquals(expected, recognizer.accepts(input, pool), input);
+                }
+            }
+            for (int i = 0; i < 200; i++) {
+                StringBuilder input = new StringBuilder();
+                for (int k = random.nextInt(30); k > 0; k--) {
+                    input.append(random.nextBoolean() ? 'a' : 'b');
+                }
+                assertEquals(recognizer.accepts(input.toString()), recognizer.accepts(input.toString(), pool),
+                        input.toString());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void unknownTerminalsAreRejected() {
+        CykRecognizer recognizer = CykRecognizer.compile(BALANCED, new GLCtoFNC.Options());
+        assertTrue(recognizer.accepts(""));
+        assertTrue(recognizer.accepts("a b"));
+        assertFalse(recognizer.accepts("acb"));
+    }
+
+    // Cadeia balanceada aleatória com o comprimento par mais próximo
+    static String balanced(int length, Random random) {
+        StringBuilder out = new StringBuilder();
+        int open = 0;
+        for (int remaining = length / 2 * 2; remaining > 0; remaining--) {
+            if (open < remaining && (open == 0 || random.nextBoolean())) {
+                out.append('a');
+                open++;
+            } else {
+                out.append('b');
+                open--;
+            }
+        }
+        return out.toString();
+    }
+
+    static boolean isBalanced(String input) {
+        int open = 0;
+        for (char c : input.toCharArray()) {
+            open += c == 'a' ? 1 : -1;
+            if (open < 0) {
+                return false;
+            }
+        }
+        return open == 0;
+    }
+}
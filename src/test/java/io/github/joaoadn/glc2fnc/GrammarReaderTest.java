@@ -0,0 +1,87 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A leitura em blocos tem de montar a mesma gramática que a leitura de texto
+class GrammarReaderTest {
+
+    @TempDir
+    Path directory;
+
+    static Stream<Path> grammars() throws Exception {
+        return ConversionCorpusTest.grammars();
+    }
+
+    @ParameterizedTest
+    @MethodSource("grammars")
+    void readsLikeTheTextParser(Path file) throws IOException {
+        assertSameGrammar(parse(Files.readAllLines(file, StandardCharsets.UTF_8)), GrammarReader.read(file));
+    }
+
+    // Regras compactas antes da primeira de tokens são lidas de novo na sintaxe de tokens
+    @Test
+    void lateTokenRuleSwitchesTheWholeFile() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lines.add("S -> aSb | ab | A");
+        }
+        lines.add("A -> x y | .");
+        Path file = write(String.join("\n", lines));
+
+        Grammar grammar = GrammarReader.read(file);
+        assertTrue(grammar.symbols.tokenized);
+        assertSameGrammar(parse(lines), grammar);
+    }
+
+    // A linha de B é maior que o bloco de 1 MB e faz o buffer crescer
+    @Test
+    void byteOrderMarkCarriageReturnsAndLongLines() throws IOException {
+        String body = IntStream.range(0, 1_500_000).mapToObj(i -> i % 2 == 0 ? "a" : "B")
+                .collect(Collectors.joining());
+        String text = "\uFEFFS -> aS | B \r\n\r\n  B -> " + body + " | b\r\nC -> C'c\rC' -> c";
+        Grammar grammar = GrammarReader.read(write(text));
+
+        assertFalse(grammar.symbols.tokenized);
+        assertEquals("S", grammar.symbols.name(grammar.start));
+        assertSameGrammar(parse(List.of("S -> aS | B", "B -> " + body + " | b", "C -> C'c", "C' -> c")), grammar);
+    }
+
+    private Path write(String text) throws IOException {
+        Path file = directory.resolve("glc.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static Grammar parse(List<String> lines) {
+        return GLCtoFNC.parseGrammar(lines.stream().map(String::trim).collect(Collectors.toList()));
+    }
+
+    private static void assertSameGrammar(Grammar expected, Grammar actual) {
+        assertEquals(expected.symbols.tokenized, actual.symbols.tokenized);
+        assertEquals(expected.symbols.name(expected.start), actual.symbols.name(actual.start));
+        assertEquals(rules(expected), rules(actual));
+    }
+
+    private static List<String> rules(Grammar grammar) {
+        List<String> rules = new ArrayList<>();
+        for (int p = 0; p < grammar.size(); p++) {
+            StringBuilder rule = new StringBuilder(grammar.symbols.name(grammar.head(p))).append(" ->");
+            for (int symbol : grammar.body(p)) {
+                rule.append(' ').append(grammar.symbols.isVariable(symbol) ? "V:" : "T:").append(grammar.symbols.name(symbol));
+            }
+            rules.add(rule.toString());
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,210 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Aplica sequências aleatórias de edições às gramáticas do corpus e compara,
+// depois de cada atualização, a saída incremental com a de uma conversão
+// completa das mesmas regras.
+class IncrementalConverterTest {
+
+    private static final int EDITS = 60;
+
+    static Stream<Path> grammars() throws Exception {
+        return ConversionCorpusTest.grammars();
+    }
+
+    @ParameterizedTest
+    @MethodSource("grammars")
+    void updatesMatchAFullConversion(Path file) throws IOException {
+        assertUpdatesMatch(file, new GLCtoFNC.Options().maxProductions(20_000));
+    }
+
+    // TERM e BIN refeitos sobre a saída incremental de USELESS
+    @ParameterizedTest
+    @MethodSource("grammars")
+    void repairUpdatesMatchAFullConversion(Path file) throws IOException {
+        assertUpdatesMatch(file, new GLCtoFNC.Options().maxProductions(20_000)
+                .binarization(GLCtoFNC.Binarization.REPAIR));
+    }
+
+    // Lambdas ligados e desligados em corpos longos passam do limite em boa
+    // parte das edições, e a mensagem tem de citar a mesma produção que a
+    // conversão completa
+    @Test
+    void limitMessagesMatchAFullConversion() {
+        GLCtoFNC.Options options = new GLCtoFNC.Options().maxProductions(40);
+        List<String> rules = new ArrayList<>(List.of("S -> ABCD | aEFGH | S", "E -> ABCDa | FGH", "S -> BCDEFG"));
+        for (char c = 'A'; c <= 'H'; c++) {
+            rules.add(c + " -> " + Character.toLowerCase(c));
+        }
+        IncrementalConverter converter = new IncrementalConverter(rules, options);
+        Random random = new Random(11);
+        int exceeded = 0;
+        for (int edit = 0; edit < 200; edit++) {
+            String line = (char) ('A' + random.nextInt(8)) + " -> " + GLCtoFNC.LAMBDA;
+            List<String> edited = new ArrayList<>(converter.rules());
+            if (!edited.remove(line)) {
+                edited.add(random.nextInt(edited.size() + 1), line);
+            }
+            String label = "edição " + edit + ": " + edited;
+            List<String> expected;
+            try {
+                expected = GLCtoFNC.convert(edited, options);
+            } catch (ConversionLimitException e) {
+                ConversionLimitException thrown = assertThrows(ConversionLimitException.class,
+                        () -> converter.update(edited), label);
+                assertEquals(e.getMessage(), thrown.getMessage(), label);
+                exceeded++;
+                continue;
+            }
+            assertEquals(expected, converter.update(edited), label);
+        }
+        assertTrue(exceeded > 20, "só " + exceeded + " edições passaram do limite");
+    }
+
+    private static void assertUpdatesMatch(Path file, GLCtoFNC.Options options) throws IOException {
+        List<String> rules = Files.readAllLines(file);
+        Random random = new Random(file.getFileName().toString().hashCode());
+        List<String> initial;
+        try {
+            initial = GLCtoFNC.convert(rules, options);
+        } catch (ConversionLimitException e) {
+            return;
+        }
+        IncrementalConverter converter = new IncrementalConverter(rules, options);
+        assertEquals(initial, converter.result(), file.getFileName().toString());
+
+        for (int edit = 0; edit < EDITS; edit++) {
+            List<String> before = converter.rules();
+            List<String> edited = new ArrayList<>(before);
+            List<String> removed = new ArrayList<>();
+            List<String> added = new ArrayList<>();
+            boolean appendOnly = random.nextBoolean();
+            for (int k = 1 + random.nextInt(3); k > 0; k--) {
+                edit(edited, removed, added, appendOnly, random);
+            }
+            String label = file.getFileName() + " edição " + edit + ": -" + removed + " +" + added;
+
+            List<String> expected;
+            try {
+                expected = GLCtoFNC.convert(edited, options);
+            } catch (ConversionLimitException e) {
+                ConversionLimitException thrown = assertThrows(ConversionLimitException.class,
+                        () -> update(converter, edited, removed, added, appendOnly), label);
+                assertEquals(e.getMessage(), thrown.getMessage(), label);
+                assertEquals(before, converter.rules(), label);
+                continue;
+            }
+            assertEquals(expected, update(converter, edited, removed, added, appendOnly), label);
+            assertEquals(edited, converter.rules(), label);
+        }
+    }
+
+    @Test
+    void startAndSyntaxChangesRebuildTheState() {
+        GLCtoFNC.Options options = new GLCtoFNC.Options();
+        IncrementalConverter converter = new IncrementalConverter(List.of("A -> aB | b", "B -> A | ."), options);
+        List<List<String>> versions = List.of(
+                List.of("S -> aB | b", "B -> S | ."),
+                List.of("S' -> S", "S -> aB | b", "B -> S | ."),
+                List.of("S' -> S | S'", "S -> aB | b", "B -> S | ."),
+                List.of("<S> -> a <B> | b", "<B> -> <S> | ."),
+                List.of("S -> aB | b", "B -> S | .", "X -> xyz"),
+                List.of("texto sem regras"),
+                List.of(),
+                List.of("S -> S", "S -> ."),
+                List.of("S -> abcd | abce | T1 | A", "T1 -> t", "A -> abcd | Q", "Q -> q"));
+        for (List<String> version : versions) {
+            assertEquals(GLCtoFNC.convert(version, options), converter.update(version), version.toString());
+        }
+    }
+
+    @Test
+    void updateIsRecordedAsAStage() {
+        ConversionStats stats = new ConversionStats();
+        IncrementalConverter converter = new IncrementalConverter(List.of("S -> aS | ."),
+                new GLCtoFNC.Options().stats(stats).verify(4));
+        converter.update(List.of("S -> aS | ."), List.of("S -> aSb | ."));
+        assertTrue(stats.report().contains("UPDATE"), stats.report());
+        assertTrue(stats.report().contains("VERIFY"), stats.report());
+        assertFalse(stats.report().contains("DEL"), stats.report());
+
+        stats = new ConversionStats();
+        converter = new IncrementalConverter(List.of("S -> aSb | ."),
+                new GLCtoFNC.Options().stats(stats).order(GLCtoFNC.Order.POLYNOMIAL));
+        assertTrue(stats.report().contains("DEL"), stats.report());
+        assertEquals(GLCtoFNC.convert(List.of("S -> aSb | ."), new GLCtoFNC.Options().order(GLCtoFNC.Order.POLYNOMIAL)),
+                converter.result());
+    }
+
+    private static List<String> update(IncrementalConverter converter, List<String> edited, List<String> removed,
+            List<String> added, boolean appendOnly) {
+        return appendOnly ? converter.update(removed, added) : converter.update(edited);
+    }
+
+    // Uma edição de linha: remove, troca por outra montada com pedaços das
+    // existentes, ou acrescenta lambda, uma unitária ou uma regra nova. Com
+    // appendOnly as linhas novas vão para o fim, como em update(removed, added).
+    private static void edit(List<String> rules, List<String> removed, List<String> added, boolean appendOnly,
+            Random random) {
+        List<String> heads = new ArrayList<>();
+        List<String> bodies = new ArrayList<>();
+        for (String rule : rules) {
+            String[] parts = rule.split("->", 2);
+            if (parts.length == 2) {
+                heads.add(parts[0].trim());
+                for (String body : parts[1].split("\\|")) {
+                    bodies.add(body.trim());
+                }
+            }
+        }
+        if (heads.isEmpty()) {
+            heads.add("S");
+            bodies.add("a");
+        }
+        String head = heads.get(random.nextInt(heads.size()));
+        String line;
+        switch (random.nextInt(6)) {
+            case 0:
+                line = head + " -> " + GLCtoFNC.LAMBDA;
+                break;
+            case 1:
+                line = head + " -> " + heads.get(random.nextInt(heads.size()));
+                break;
+            case 2:
+                line = head + " -> " + bodies.get(random.nextInt(bodies.size())) + " | "
+                        + bodies.get(random.nextInt(bodies.size()));
+                break;
+            default:
+                line = null;
+        }
+        // update(removed, added) tira a primeira ocorrência de cada linha, e
+        // só das que já estavam nas regras
+        int kept = rules.size() - (appendOnly ? added.size() : 0);
+        if (kept > 0 && (line == null || random.nextInt(3) == 0)) {
+            String text = rules.get(random.nextInt(kept));
+            rules.remove(appendOnly ? rules.indexOf(text) : rules.lastIndexOf(text));
+            removed.add(text);
+            if (line == null && random.nextBoolean()) {
+                line = head + " -> " + bodies.get(random.nextInt(bodies.size()));
+            }
+        }
+        if (line != null) {
+            added.add(line);
+            if (appendOnly || rules.isEmpty()) {
+                rules.add(line);
+            } else {
+                rules.add(random.nextInt(rules.size() + 1), line);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A expansão das posições anuláveis tem de gerar cada combinação distinta uma
+// única vez e parar no limite de produções antes de qualquer escrita.
+class LambdaRemovalTest {
+
+    @TempDir
+    Path directory;
+
+    // Compara com as 2^n máscaras do corpo, repetições descartadas
+    @Test
+    void combinationsMatchEveryMaskOfTheBody() {
+        SymbolTable symbols = new SymbolTable();
+        int[] alphabet = {symbols.variable("A"), symbols.variable("B"), symbols.variable("C"), symbols.terminal("a")};
+        BitSet nullable = new BitSet();
+        nullable.set(alphabet[0]);
+        nullable.set(alphabet[1]);
+        int head = symbols.variable("S");
+        int[] lastPosition = new int[symbols.size()];
+        Arrays.fill(lastPosition, -1);
+        Random random = new Random(5);
+        for (int round = 0; round < 500; round++) {
+            int[] body = new int[1 + random.nextInt(10)];
+            for (int i = 0; i < body.length; i++) {
+                body[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            Set<List<Integer>> expected = new HashSet<>();
+            for (int mask = 1; mask < 1 << body.length; mask++) {
+                List<Integer> kept = new ArrayList<>();
+                boolean valid = true;
+                for (int i = 0; i < body.length; i++) {
+                    if ((mask >> i & 1) != 0) {
+                        kept.add(body[i]);
+                    } else {
+                        valid &= nullable.get(body[i]);
+                    }
+                }
+                if (valid) {
+                    expected.add(kept);
+                }
+            }
+
+            Grammar grammar = new Grammar(symbols, head);
+            GLCtoFNC.generateCombinations(grammar, head, body, nullable, lastPosition, Long.MAX_VALUE);
+            Set<List<Integer>> generated = new HashSet<>();
+            for (int p = 0; p < grammar.size(); p++) {
+                List<Integer> kept = new ArrayList<>();
+                for (int symbol : grammar.body(p)) {
+                    kept.add(symbol);
+                }
+                generated.add(kept);
+            }
+            assertEquals(expected, generated, Arrays.toString(body));
+        }
+    }
+
+    @Test
+    void limitNamesTheProductionBeingExpanded() {
+        GLCtoFNC.Options options = new GLCtoFNC.Options().maxProductions(1000);
+        ConversionLimitException e = assertThrows(ConversionLimitException.class,
+                () -> GLCtoFNC.convert(nullableRules(), options));
+        assertTrue(e.getMessage().contains("limite de 1000 produções"), e.getMessage());
+        assertTrue(e.getMessage().contains("(20 símbolos, 20 anuláveis)"), e.getMessage());
+    }
+
+    // O limite estoura antes de o arquivo de saída ser aberto, em texto ou binário
+    @Test
+    void noOutputIsWrittenPastTheLimit() throws IOException {
+        Path input = directory.resolve("glc.txt");
+        Files.write(input, nullableRules());
+        Path text = directory.resolve("fnc.txt");
+        Path binary = directory.resolve("fnc.bin");
+
+        assertEquals(GLCtoFNC.FAILURE,
+                GLCtoFNC.run(new String[] {"--max-productions", "1000", input.toString(), text.toString()}));
+        assertEquals(GLCtoFNC.FAILURE,
+                GLCtoFNC.run(new String[] {"--max-productions", "1000", "--binary", input.toString(), binary.toString()}));
+
+        assertFalse(Files.exists(text));
+        assertFalse(Files.exists(binary));
+    }
+
+    // Cada fatia passaria do limite sozinha; com o orçamento compartilhado
+    // todas juntas param logo depois dele
+    @Test
+    void parallelSlicesStopAtTheSharedLimit() {
+        long limit = 5000;
+        Grammar grammar = nullableBodies(4096, "X");
+        BitSet nullable = GLCtoFNC.identifyNullableVariables(grammar);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            GLCtoFNC.Expansion[] expansions = GLCtoFNC.expandInParallel(grammar, nullable, limit, pool, 16);
+            long built = 0;
+            for (GLCtoFNC.Expansion expansion : expansions) {
+                built += expansion.grammar.size();
+            }
+            assertTrue(built <= limit + expansions.length, built + " produções nas fatias");
+
+            GLCtoFNC.Options options = new GLCtoFNC.Options().maxProductions(limit);
+            ConversionLimitException sequential = assertThrows(ConversionLimitException.class,
+                    () -> GLCtoFNC.removeLambdaRules(grammar, options));
+            ConversionLimitException parallel = assertThrows(ConversionLimitException.class,
+                    () -> GLCtoFNC.removeLambdaRules(grammar, options.parallel(pool)));
+            assertEquals(sequential.getMessage(), parallel.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Com a mesma cabeça, as fatias repetem as combinações sem o Z<i>: a soma
+    // delas passa do limite, a junção não, e a expansão é retomada em ordem
+    @Test
+    void repeatsAcrossSlicesDoNotStopTheExpansion() {
+        Grammar grammar = nullableBodies(1200, null);
+        GLCtoFNC.Options sequential = new GLCtoFNC.Options().maxProductions(Long.MAX_VALUE);
+        Grammar expected = GLCtoFNC.removeLambdaRules(grammar, sequential);
+        long limit = expected.size();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            GLCtoFNC.Expansion[] expansions = GLCtoFNC.expandInParallel(grammar,
+                    GLCtoFNC.identifyNullableVariables(grammar), limit, pool, 4);
+            assertTrue(Arrays.stream(expansions).anyMatch(expansion -> expansion.stopped >= 0));
+
+            Grammar actual = GLCtoFNC.removeLambdaRules(grammar, new GLCtoFNC.Options().maxProductions(limit).parallel(pool));
+            assertEquals(expected.size(), actual.size());
+            for (int p = 0; p < expected.size(); p++) {
+                assertEquals(expected.head(p), actual.head(p));
+                assertArrayEquals(expected.body(p), actual.body(p));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // count produções Z<i> ABCDEFGH com tudo anulável, cada uma com a cabeça
+    // head<i>, ou todas com a cabeça S quando head é null
+    private static Grammar nullableBodies(int count, String head) {
+        SymbolTable symbols = new SymbolTable();
+        symbols.tokenized = true;
+        Grammar grammar = new Grammar(symbols, symbols.variable("S"));
+        int[] body = new int[9];
+        for (int i = 1; i < body.length; i++) {
+            body[i] = symbols.variable(String.valueOf((char) ('A' + i - 1)));
+            grammar.add(body[i], symbols.terminal(String.valueOf((char) ('a' + i - 1))));
+            grammar.add(body[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            body[0] = symbols.variable("Z" + i);
+            grammar.add(body[0], symbols.terminal("z"));
+            grammar.add(body[0]);
+            grammar.add(head == null ? grammar.start : symbols.variable(head + i), body.clone());
+        }
+        return grammar;
+    }
+
+    // S -> ABCDEFGHIJKLMNOPQRTU com todas as variáveis anuláveis: 2^20 - 1 corpos
+    private static List<String> nullableRules() {
+        List<String> rules = new ArrayList<>();
+        StringBuilder body = new StringBuilder();
+        for (char c = 'A'; body.length() < 20; c++) {
+            if (c != 'S') {
+                body.append(c);
+                rules.add(c + " -> " + Character.toLowerCase(c) + " | .");
+            }
+        }
+        rules.add(0, "S -> " + body);
+        return rules;
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.joaoadn.glc2fnc;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LanguageCheckerTest {
+
+    private static final int TERMINALS = 70_000;
+
+    // Com um char por terminal, t65536 e t0 teriam o mesmo código
+    @Test
+    void terminalsPastTheCharRangeStayDistinct() {
+        Grammar original = alternatives(-1);
+        Grammar missing = alternatives(65_536);
+
+        assertNull(LanguageChecker.findDifference(original, alternatives(-1), 2));
+        assertEquals("a cadeia \"t65536 t1\" é gerada só pela gramática original (comparação até o comprimento 2)",
+                LanguageChecker.findDifference(original, missing, 2));
+    }
+
+    // S -> t<i> t1 para cada i, menos o omitido
+    private static Grammar alternatives(int omitted) {
+        SymbolTable symbols = new SymbolTable();
+        symbols.tokenized = true;
+        Grammar grammar = new Grammar(symbols, symbols.variable("S"));
+        int second = symbols.terminal("t1");
+        for (int i = 0; i < TERMINALS; i++) {
+            int terminal = symbols.terminal("t" + i);
+            if (i != omitted) {
+                grammar.add(grammar.start, terminal, second);
+            }
+        }
+        return grammar;
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MembershipStreamTest {
+
+    // Mais de dois lotes, para que a leitura do próximo lote se sobreponha ao teste do atual
+    @Test
+    void resultsComeOutInInputOrder() throws IOException {
+        CykRecognizer recognizer = CykRecognizer.compile(List.of("S -> aSbS | ."), new GLCtoFNC.Options());
+        Random random = new Random(11);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 2 * MembershipStream.BATCH_SIZE + 123; i++) {
+            String line = CykRecognizerTest.balanced(random.nextInt(24), random);
+            lines.add(random.nextInt(3) == 0 ? line + "a" : line);
+        }
+
+        StringWriter output = new StringWriter();
+        MembershipStream.run(recognizer, new BufferedReader(new StringReader(String.join("\n", lines))), output, 3);
+
+        List<String> results = output.toString().lines().toList();
+        assertEquals(lines.size(), results.size());
+        for (int i = 0; i < lines.size(); i++) {
+            String expected = (CykRecognizerTest.isBalanced(lines.get(i)) ? "ACEITA  " : "REJEITA ") + lines.get(i);
+            assertEquals(expected, results.get(i), "linha " + i);
+        }
+    }
+
+    @Test
+    void emptyInputWritesNothing() throws IOException {
+        CykRecognizer recognizer = CykRecognizer.compile(List.of("S -> ab"), new GLCtoFNC.Options());
+        StringWriter output = new StringWriter();
+        MembershipStream.run(recognizer, new BufferedReader(new StringReader("")), output, 2);
+        assertEquals("", output.toString());
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.util.*;
+
+// Referência dos testes, independente das etapas da conversão: um
+// reconhecedor de Earley (com o tratamento de anuláveis de Aycock e Horspool)
+// que aceita qualquer gramática livre de contexto, inclusive com produções
+// lambda e unitárias. As cadeias do alfabeto são enumeradas em profundidade,
+// estendendo a tabela um terminal por vez, e um prefixo cujo conjunto de
+// itens fica vazio não é estendido.
+final class ReferenceLanguage {
+
+    private final Grammar grammar;
+    private final Grammar.Index byHead;
+    private final boolean[] nullable;
+    private final int[] alphabet;
+    private final int maxLength;
+
+    // Itens (produção, ponto, origem) de cada posição da tabela
+    private final List<List<long[]>> chart = new ArrayList<>();
+    private final List<Set<List<Long>>> seen = new ArrayList<>();
+    private final Set<List<Integer>> accepted = new HashSet<>();
+    private final Deque<Integer> prefix = new ArrayDeque<>();
+
+    private ReferenceLanguage(Grammar grammar, int[] alphabet, int maxLength) {
+        this.grammar = grammar;
+        this.byHead = grammar.indexByHead();
+        this.alphabet = alphabet;
+        this.maxLength = maxLength;
+        nullable = new boolean[grammar.symbols.size()];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < grammar.size(); p++) {
+                boolean all = true;
+                for (int i = 0; i < grammar.length(p); i++) {
+                    all &= nullable[grammar.symbol(p, i)];
+                }
+                if (all && !nullable[grammar.head(p)]) {
+                    nullable[grammar.head(p)] = true;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    // Terminais que aparecem nos corpos das produções
+    static int[] alphabet(Grammar grammar) {
+        TreeSet<Integer> terminals = new TreeSet<>();
+        for (int p = 0; p < grammar.size(); p++) {
+            for (int i = 0; i < grammar.length(p); i++) {
+                if (!grammar.symbols.isVariable(grammar.symbol(p, i))) {
+                    terminals.add(grammar.symbol(p, i));
+                }
+            }
+        }
+        return terminals.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Cadeias de comprimento até maxLength geradas pelo símbolo inicial, como
+    // listas de ids de terminais
+    static Set<List<Integer>> strings(Grammar grammar, int[] alphabet, int maxLength) {
+        ReferenceLanguage reference = new ReferenceLanguage(grammar, alphabet, maxLength);
+        if (grammar.start >= 0 && grammar.start < grammar.symbols.size()) {
+            reference.openPosition();
+            for (int k = reference.byHead.from(grammar.start); k < reference.byHead.to(grammar.start); k++) {
+                reference.add(0, reference.byHead.get(k), 0, 0);
+            }
+            reference.close(0);
+            reference.extend(0);
+        }
+        return reference.accepted;
+    }
+
+    private void extend(int position) {
+        for (long[] item : chart.get(position)) {
+            int p = (int) item[0];
+            if (grammar.head(p) == grammar.start && item[1] == grammar.length(p) && item[2] == 0) {
+                accepted.add(new ArrayList<>(prefix));
+                break;
+            }
+        }
+        if (position == maxLength) {
+            return;
+        }
+        for (int terminal : alphabet) {
+            openPosition();
+            for (long[] item : chart.get(position)) {
+                int p = (int) item[0];
+                int dot = (int) item[1];
+                if (dot < grammar.length(p) && grammar.symbol(p, dot) == terminal) {
+                    add(position + 1, p, dot + 1, (int) item[2]);
+                }
+            }
+            if (!chart.get(position + 1).isEmpty()) {
+                close(position + 1);
+                prefix.addLast(terminal);
+                extend(position + 1);
+                prefix.removeLast();
+            }
+            chart.remove(position + 1);
+            seen.remove(position + 1);
+        }
+    }
+
+    private void openPosition() {
+        chart.add(new ArrayList<>());
+        seen.add(new HashSet<>());
+    }
+
+    private void add(int position, int p, int dot, int origin) {
+        if (seen.get(position).add(List.of((long) p, (long) dot, (long) origin))) {
+            chart.get(position).add(new long[] {p, dot, origin});
+        }
+    }
+
+    // Previsão e conclusão até o conjunto da posição não mudar mais
+    private void close(int position) {
+        List<long[]> items = chart.get(position);
+        for (int k = 0; k < items.size(); k++) {
+            int p = (int) items.get(k)[0];
+            int dot = (int) items.get(k)[1];
+            int origin = (int) items.get(k)[2];
+            if (dot < grammar.length(p)) {
+                int symbol = grammar.symbol(p, dot);
+                if (!grammar.symbols.isVariable(symbol)) {
+                    continue;
+                }
+                for (int q = byHead.from(symbol); q < byHead.to(symbol); q++) {
+                    add(position, byHead.get(q), 0, position);
+                }
+                if (nullable[symbol]) {
+                    add(position, p, dot + 1, origin);
+                }
+                continue;
+            }
+            int head = grammar.head(p);
+            List<long[]> waiting = chart.get(origin);
+            for (int w = 0; w < waiting.size(); w++) {
+                long[] item = waiting.get(w);
+                int q = (int) item[0];
+                int at = (int) item[1];
+                if (at < grammar.length(q) && grammar.symbol(q, at) == head) {
+                    add(position, q, at + 1, (int) item[2]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A saída em texto tem de ser lida de volta com a mesma linguagem, tanto na
+// sintaxe compacta quanto na de tokens, para a qual ela passa quando os nomes
+// de uma letra se esgotam.
+class RoundTripTest {
+
+    private static final int MAX_LENGTH = 5;
+
+    @TempDir
+    Path directory;
+
+    static Stream<Path> grammars() throws Exception {
+        return ConversionCorpusTest.grammars();
+    }
+
+    @ParameterizedTest
+    @MethodSource("grammars")
+    void writtenGrammarKeepsTheLanguage(Path file) throws IOException {
+        Grammar original = GLCtoFNC.readGrammar(file.toString());
+        Path output = directory.resolve(file.getFileName());
+        GLCtoFNC.writeGrammar(output.toString(), GLCtoFNC.processGrammar(original, new GLCtoFNC.Options()));
+        Grammar read = GLCtoFNC.readGrammar(output.toString());
+
+        ConversionCorpusTest.assertCnf(read, file.getFileName().toString());
+        assertEquals(strings(original), strings(read), file.getFileName().toString());
+    }
+
+    @Test
+    void compactOutputIsRecognizedByCyk() throws IOException {
+        CykRecognizer recognizer = new CykRecognizer(reconvert("S -> aSb | ab"));
+        assertTrue(recognizer.accepts("aabb"));
+        assertTrue(recognizer.accepts("ab"));
+        assertFalse(recognizer.accepts("aab"));
+
+        recognizer = new CykRecognizer(reconvert("S -> aS | bS | C | D", "C -> c | .", "D -> abc", "D -> ."));
+        assertTrue(recognizer.accepts("abc"));
+        assertTrue(recognizer.accepts(""));
+    }
+
+    @Test
+    void convertedGrammarIsAFixedPoint() {
+        String converted = GLCtoFNC.convert("S -> aA | b\nA -> aS | a\n");
+        assertEquals(converted, GLCtoFNC.convert(converted));
+        assertFalse(GLCtoFNC.parseGrammar(converted.lines().collect(Collectors.toList())).symbols.tokenized);
+    }
+
+    @Test
+    void longNamesSwitchToTokenSyntax() {
+        String body = IntStream.range(0, 60).mapToObj(i -> String.valueOf((char) ('a' + i % 26)))
+                .collect(Collectors.joining());
+        Grammar original = GLCtoFNC.parseGrammar(List.of("S -> " + body + " | ."));
+        String converted = GLCtoFNC.convert("S -> " + body + " | .\n");
+        Grammar read = GLCtoFNC.parseGrammar(converted.lines().collect(Collectors.toList()));
+
+        assertTrue(read.symbols.tokenized);
+        assertEquals(strings(original, 60), strings(read, 60));
+    }
+
+    @Test
+    void emptyTerminalIsQuoted() {
+        Grammar original = GLCtoFNC.parseGrammar(List.of("S -> \"\" '' x | x"));
+        String converted = GLCtoFNC.convert("S -> \"\" '' x | x\n");
+        Grammar read = GLCtoFNC.parseGrammar(converted.lines().collect(Collectors.toList()));
+
+        assertEquals(strings(original), strings(read));
+    }
+
+    private static Grammar reconvert(String... rules) {
+        List<String> converted = GLCtoFNC.convert(List.of(rules), new GLCtoFNC.Options());
+        return GLCtoFNC.parseGrammar(converted);
+    }
+
+    private static Set<List<String>> strings(Grammar grammar) {
+        return strings(grammar, MAX_LENGTH);
+    }
+
+    // As cadeias por nome dos terminais, já que cada leitura tem sua tabela
+    private static Set<List<String>> strings(Grammar grammar, int maxLength) {
+        Set<List<String>> named = new HashSet<>();
+        for (List<Integer> string : ReferenceLanguage.strings(grammar, ReferenceLanguage.alphabet(grammar), maxLength)) {
+            named.add(string.stream().map(grammar.symbols::name).collect(Collectors.toList()));
+        }
+        return named;
+    }
+}
@@ -0,0 +1,131 @@
+package io.github.joaoadn.glc2fnc;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringSamplerTest {
+
+    private static final List<String> EXPRESSIONS = List.of(
+            "<E> -> <E> + <T> | <T>",
+            "<T> -> <T> * <F> | <F>",
+            "<F> -> ( <E> ) | x | y");
+
+    @Test
+    void sameSeedGivesTheSameStringsWithAnyNumberOfThreads() throws IOException {
+        StringSampler sampler = StringSampler.compile(EXPRESSIONS, new GLCtoFNC.Options(), 15);
+        String expected = sample(sampler, 15, 3000, 42, 1);
+
+        assertEquals(expected, sample(sampler, 15, 3000, 42, 1));
+        assertEquals(expected, sample(sampler, 15, 3000, 42, 4));
+        assertNotEquals(expected, sample(sampler, 15, 3000, 43, 1));
+        assertEquals(3000, expected.lines().count());
+    }
+
+    @Test
+    void everySampleIsAcceptedByTheCnf() {
+        Grammar cnf = GLCtoFNC.processGrammar(GLCtoFNC.parseGrammar(EXPRESSIONS), new GLCtoFNC.Options());
+        StringSampler sampler = new StringSampler(cnf, 21);
+        CykRecognizer recognizer = new CykRecognizer(cnf);
+        SplittableRandom random = new SplittableRandom(7);
+        for (int length = 1; length <= 21; length += 2) {
+            for (int i = 0; i < 200; i++) {
+                String sample = sampler.sample(length, random);
+                assertEquals(length, sample.split(" ").length, sample);
+                assertTrue(recognizer.accepts(sample), sample);
+            }
+        }
+        assertNull(sampler.sample(2, random));
+    }
+
+    // Terminais que só se escrevem entre aspas: maiúsculo, lambda, barra e
+    // um nome que já tem aspas. A amostra tem de voltar pelo --cyk.
+    @Test
+    void quotedTerminalsRoundTripThroughTheRecognizer() {
+        List<String> rules = List.of(
+                "S -> 'A' S \"'q'\" | '.' | x '|' S | '<v>'",
+                "<X> -> \"'q'\" <X> | '.'");
+        Grammar cnf = GLCtoFNC.processGrammar(GLCtoFNC.parseGrammar(rules), new GLCtoFNC.Options());
+        StringSampler sampler = new StringSampler(cnf, 9);
+        CykRecognizer recognizer = new CykRecognizer(cnf);
+        SplittableRandom random = new SplittableRandom(3);
+        Set<String> seen = new TreeSet<>();
+        for (int length = 1; length <= 9; length++) {
+            for (int i = 0; i < 100; i++) {
+                String sample = sampler.sample(length, random);
+                if (sample != null) {
+                    assertTrue(recognizer.accepts(sample), sample);
+                    seen.add(sample);
+                }
+            }
+        }
+        assertTrue(seen.contains("'A' '.' \"'q'\""), seen.toString());
+        assertTrue(seen.contains("x '|' '<v>'"), seen.toString());
+    }
+
+    // S gera cada uma das 2^n cadeias sobre {a, b} por uma única derivação
+    @Test
+    void frequenciesAreUniformOverAFiniteLanguage() {
+        StringSampler sampler = StringSampler.compile(List.of("S -> aS | bS | a | b"), new GLCtoFNC.Options(), 4);
+        assertEquals(BigInteger.valueOf(16), sampler.count(4));
+        Map<String, Integer> frequencies = new TreeMap<>();
+        SplittableRandom random = new SplittableRandom(1);
+        int samples = 64_000;
+        for (int i = 0; i < samples; i++) {
+            frequencies.merge(sampler.sample(4, random), 1, Integer::sum);
+        }
+        assertEquals(16, frequencies.size(), frequencies.toString());
+        // Qui-quadrado com 15 graus de liberdade: 37.7 é o quantil de 0.999
+        double expected = samples / 16.0;
+        double chiSquare = 0;
+        for (int frequency : frequencies.values()) {
+            chiSquare += (frequency - expected) * (frequency - expected) / expected;
+        }
+        assertTrue(chiSquare < 37.7, frequencies.toString());
+    }
+
+    // S -> SS | a | b tem Catalan(n - 1) * 2^n derivações de comprimento n,
+    // que passam de 2^63 antes de n = 40: os sorteios misturam as tabelas em
+    // long e em BigInteger
+    @Test
+    void longAndBigIntegerTablesAgree() {
+        Grammar cnf = GLCtoFNC.processGrammar(GLCtoFNC.parseGrammar(List.of("S -> SS | a | b")),
+                new GLCtoFNC.Options());
+        StringSampler mixed = new StringSampler(cnf, 60);
+        StringSampler exact = new StringSampler(cnf, 60, false);
+        BigInteger catalan = BigInteger.ONE;
+        for (int n = 1; n <= 60; n++) {
+            assertEquals(catalan.shiftLeft(n), mixed.count(n), "n = " + n);
+            assertEquals(mixed.count(n), exact.count(n), "n = " + n);
+            catalan = catalan.multiply(BigInteger.valueOf(2 * (2L * n - 1))).divide(BigInteger.valueOf(n + 1));
+        }
+        assertTrue(mixed.count(60).bitLength() > 63);
+
+        for (int length : new int[] {1, 5, 30, 60}) {
+            SplittableRandom first = new SplittableRandom(length);
+            SplittableRandom second = new SplittableRandom(length);
+            for (int i = 0; i < 100; i++) {
+                assertEquals(exact.sample(length, first), mixed.sample(length, second), "comprimento " + length);
+            }
+        }
+    }
+
+    @Test
+    void negativeCountIsRejected() {
+        StringSampler sampler = StringSampler.compile(List.of("S -> aS | a"), new GLCtoFNC.Options(), 3);
+        assertThrows(IllegalArgumentException.class,
+                () -> StringSampler.run(sampler, 3, -1, 0, new StringWriter(), 1));
+    }
+
+    private static String sample(StringSampler sampler, int length, long count, long seed, int jobs)
+            throws IOException {
+        StringWriter output = new StringWriter();
+        StringSampler.run(sampler, length, count, seed, output, jobs);
+        return output.toString();
+    }
+}